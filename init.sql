@@ -5,24 +5,74 @@ CREATE DATABASE IF NOT EXISTS test
 
 USE cosmoport;
 
+-- Ids: shard i (1-based, its position in ships.datasource.shardUrls) of n hands out i, i + n,
+-- i + 2n, ... so that an id names its shard and stays unique across the fleet, see ShipShards.
+-- Run this script on every shard with its position, e.g. for the second of three:
+--   mysql --init-command="SET @shard = 2, @shards = 3" -u root -p < init.sql
+-- Without them, as for an unsharded database, ids are 1, 2, 3, ... The settings are persisted,
+-- so they hold for every later connection and across restarts; this script's own session keeps
+-- numbering the seed ships 1, 2, 3, ...
+SET PERSIST auto_increment_increment = COALESCE(@shards, 1);
+SET PERSIST auto_increment_offset = COALESCE(@shard, 1);
+
 DROP TABLE IF EXISTS ship;
+DROP TABLE IF EXISTS ship_change_log;
+DROP TABLE IF EXISTS ship_change_sequence;
 
 CREATE TABLE ship
 (
     id       BIGINT(20)  NOT NULL AUTO_INCREMENT,
-    name     VARCHAR(50) NULL,
-    planet   VARCHAR(50) NULL,
+    -- Binary collation, so that LIKE filters, GROUP BY and equality on names and planets are
+    -- case-sensitive like the String comparisons ShipService applies to ships held in memory.
+    name     VARCHAR(50) COLLATE utf8_bin NULL,
+    planet   VARCHAR(50) COLLATE utf8_bin NULL,
     shipType VARCHAR(9)  NULL,
     prodDate date        NULL,
     isUsed   BIT(1)      NULL,
     speed    DOUBLE      NULL,
     crewSize INT(4)      NULL,
+    -- Written by the application with RatingFormula. This is deliberately not a generated column:
+    -- a generated column can only use fixed constants, while the formula is configurable. Ratings
+    -- are kept equal to the formula by RatingRecomputer and checked by GET /admin/ratings/check.
     rating   DOUBLE      NULL,
+    -- Version of the rating formula the rating was computed with, see RatingFormula.
+    ratingVersion INT    NULL,
     PRIMARY KEY (id)
 )
     ENGINE = InnoDB
     DEFAULT CHARACTER SET = utf8;
 
+CREATE INDEX ship_rating_idx ON ship (rating);
+-- Leaderboards read the first rows of these indexes, see ShipRepositoryCustom.findTop.
+CREATE INDEX ship_speed_idx ON ship (speed);
+CREATE INDEX ship_type_rating_idx ON ship (shipType, rating);
+CREATE INDEX ship_type_speed_idx ON ship (shipType, speed);
+CREATE INDEX ship_planet_rating_idx ON ship (planet, rating);
+CREATE INDEX ship_planet_speed_idx ON ship (planet, speed);
+
+-- Append-only log of ship changes, written in the same transaction as the change; see ShipChange.
+CREATE TABLE ship_change_log
+(
+    id             BIGINT(20) NOT NULL AUTO_INCREMENT,
+    shipId         BIGINT(20) NOT NULL,
+    changeType     VARCHAR(6) NOT NULL,
+    changedAt      BIGINT(20) NOT NULL,
+    commitSequence BIGINT(20) NOT NULL,
+    PRIMARY KEY (id),
+    UNIQUE (commitSequence)
+)
+    ENGINE = InnoDB;
+
+-- Last commitSequence taken; its row lock orders the log by commit and serialises this shard's
+-- committers, see ShipChangeLog.
+CREATE TABLE ship_change_sequence
+(
+    lastSequence BIGINT(20) NOT NULL
+)
+    ENGINE = InnoDB;
+INSERT INTO ship_change_sequence(lastSequence)
+VALUES (0);
+
 insert into ship(name, planet, shipType, prodDate, isUsed, speed, crewSize, rating)
 values ('Orion III', 'Mars', 'MERCHANT', '2995-01-01', true, 0.82, 617, 1.31)
      , ('Daedalus', 'Jupiter', 'MERCHANT', '3001-01-01', true, 0.94, 1619, 1.98)
@@ -64,3 +114,8 @@ values ('Orion III', 'Mars', 'MERCHANT', '2995-01-01', true, 0.82, 617, 1.31)
      , ('Nostromo', 'Saturn', 'MERCHANT', '2991-01-01', true, 0.31, 1967, 0.43)
      , ('Tardis', 'Jupiter', 'MERCHANT', '3016-01-01', false, 0.86, 4871, 17.20)
      , ('Star Destroyer', 'Mercury', 'MILITARY', '3017-01-01', false, 0.92, 4880, 24.53);
+
+update ship set ratingVersion = 1;
+
+-- A shard keeps the seed ships whose ids belong to it; new ids continue its series.
+delete from ship where mod(id - 1, coalesce(@shards, 1)) <> coalesce(@shard, 1) - 1;
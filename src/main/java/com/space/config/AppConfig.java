@@ -1,12 +1,19 @@
 package com.space.config;
 
+import com.space.routing.ReplicaRoutingDataSource;
+import com.space.routing.ShardRoutingDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
 import org.springframework.dao.annotation.PersistenceExceptionTranslationPostProcessor;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.JpaVendorAdapter;
@@ -17,16 +24,27 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
 import static org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType.H2;
 
 @Configuration
 @EnableTransactionManagement
-@ComponentScan("com.space.service")
+@ComponentScan({"com.space.service", "com.space.web", "com.space.metrics", "com.space.tracing", "com.space.routing"})
 @EnableJpaRepositories(basePackages = "com.space.repository")
+@PropertySource(value = "classpath:cosmoport.properties", ignoreResourceNotFound = true)
 public class AppConfig {
 
+    private final Environment environment;
+
+    @Autowired
+    public AppConfig(Environment environment) {
+        this.environment = environment;
+    }
+
     @Bean
     public LocalContainerEntityManagerFactoryBean entityManagerFactory() {
         LocalContainerEntityManagerFactoryBean em = new LocalContainerEntityManagerFactoryBean();
@@ -40,28 +58,57 @@ public class AppConfig {
         return em;
     }
 
+    /**
+     * The primary MySQL database, plus read replicas listed in {@code ships.datasource.replicaUrls}
+     * (comma-separated, same credentials) that serve read-only transactions. Alternatively, the
+     * fleet is spread over the databases listed in {@code ships.datasource.shardUrls}, each set up
+     * by init.sql to hand out the ids of its position in the list.
+     */
     @Profile("prod")
     @Bean
     public DataSource dataSource() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setDriverClassName("com.mysql.cj.jdbc.Driver");
-        dataSource.setUrl("jdbc:mysql://localhost:3306/cosmoport?serverTimezone=UTC");
-        dataSource.setUsername("root");
-        dataSource.setPassword("root");
-        return dataSource;
+        String[] shardUrls = urls("ships.datasource.shardUrls");
+        String[] replicaUrls = urls("ships.datasource.replicaUrls");
+        if (shardUrls.length > 1) {
+            if (replicaUrls.length > 0)
+                throw new IllegalStateException("Replicas are not supported together with shards");
+
+            List<DataSource> shards = new ArrayList<>();
+            for (String url : shardUrls)
+                shards.add(mysqlDataSource(url));
+            return new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(shards));
+        }
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls)
+            replicas.add(mysqlDataSource(url));
+
+        return routingDataSource(mysqlDataSource("jdbc:mysql://localhost:3306/cosmoport?serverTimezone=UTC"),
+                replicas);
     }
 
+    /**
+     * An embedded database; with {@code ships.datasource.embeddedReplica=true} a second one, loaded
+     * from the same script but never replicated to, stands in for a lagging replica. With
+     * {@code ships.datasource.embeddedShards} above 1 that many embedded databases stand in for
+     * shards instead, each keeping the seed ships whose ids belong to it.
+     */
     @Profile("dev")
     @Bean(name = "dataSource")
     public DataSource dataSourceForTests() {
+        int shardCount = environment.getProperty("ships.datasource.embeddedShards", Integer.class, 0);
+        if (shardCount > 1) {
+            List<DataSource> shards = new ArrayList<>();
+            for (int i = 0; i < shardCount; i++)
+                shards.add(embeddedShard(i, shardCount));
+            return new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(shards));
+        }
 
-        return new EmbeddedDatabaseBuilder()
-                .generateUniqueName(true)
-                .setType(H2)
-                .setScriptEncoding("UTF-8")
-                .ignoreFailedDrops(true)
-                .addScript("test.sql")
-                .build();
+        List<DataSource> replicas = new ArrayList<>();
+        if (environment.getProperty("ships.datasource.embeddedReplica", Boolean.class, false))
+            replicas.add(embeddedDataSource());
+
+        return routingDataSource(embeddedDataSource(), replicas);
     }
 
     @Bean
@@ -77,9 +124,62 @@ public class AppConfig {
         return new PersistenceExceptionTranslationPostProcessor();
     }
 
+    private static DataSource mysqlDataSource(String url) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource();
+        dataSource.setDriverClassName("com.mysql.cj.jdbc.Driver");
+        dataSource.setUrl(url);
+        dataSource.setUsername("root");
+        dataSource.setPassword("root");
+        return dataSource;
+    }
+
+    private static DataSource embeddedDataSource() {
+        return new EmbeddedDatabaseBuilder()
+                .generateUniqueName(true)
+                .setType(H2)
+                .setScriptEncoding("UTF-8")
+                .ignoreFailedDrops(true)
+                .addScript("test.sql")
+                .build();
+    }
+
+    /**
+     * Keeps the seed ships of the given shard and makes its ids continue with
+     * {@code shard + 1 (mod shardCount)}, as init.sql sets MySQL shards up to.
+     */
+    private static DataSource embeddedShard(int shard, int shardCount) {
+        DataSource dataSource = embeddedDataSource();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("DELETE FROM ship WHERE MOD(id - 1, ?) <> ?", shardCount, shard);
+
+        long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM ship", Long.class);
+        long nextId = maxId + 1 + Math.floorMod(shard - maxId, (long) shardCount);
+        jdbcTemplate.execute("ALTER TABLE ship ALTER COLUMN id BIGINT(20) NOT NULL AUTO_INCREMENT("
+                + nextId + ", " + shardCount + ")");
+        return dataSource;
+    }
+
+    private String[] urls(String property) {
+        return Arrays.stream(environment.getProperty(property, String[].class, new String[0]))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Without replicas the primary is used as is; see {@link ReplicaRoutingDataSource} otherwise.
+     */
+    private static DataSource routingDataSource(DataSource primary, List<DataSource> replicas) {
+        if (replicas.isEmpty())
+            return primary;
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replicas));
+    }
+
     private Properties additionalProperties() {
         Properties properties = new Properties();
         properties.setProperty("hibernate.dialect", "org.hibernate.dialect.MySQL5Dialect");
+        properties.setProperty("hibernate.generate_statistics",
+                environment.getProperty("ships.hibernate.statistics", "false"));
 
         return properties;
     }
@@ -2,26 +2,94 @@ package com.space.config;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.space.metrics.MetricsInterceptor;
+import com.space.routing.ReadYourWritesInterceptor;
+import com.space.tracing.TracingInterceptor;
+import com.space.web.AdmissionControlInterceptor;
+import com.space.web.QueryTimeoutInterceptor;
+import com.space.web.ShipBinaryHttpMessageConverter;
+import com.space.web.ShipJsonSerializer;
+import com.space.web.ShipRecordJsonSerializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.http.CacheControl;
 import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.HandlerExceptionResolver;
 import org.springframework.web.servlet.ViewResolver;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
 import org.springframework.web.servlet.view.InternalResourceViewResolver;
 import org.springframework.web.servlet.view.JstlView;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @EnableWebMvc
 @ComponentScan("com.space.controller")
 public class WebConfig implements WebMvcConfigurer {
 
+    private final MetricsInterceptor metricsInterceptor;
+    private final TracingInterceptor tracingInterceptor;
+    private final ReadYourWritesInterceptor readYourWritesInterceptor;
+    private final AdmissionControlInterceptor admissionControlInterceptor;
+    private final QueryTimeoutInterceptor queryTimeoutInterceptor;
+    private final ObjectProvider<TaskDecorator> taskDecorators;
+    private final int asyncThreads;
+
+    @Autowired
+    public WebConfig(MetricsInterceptor metricsInterceptor, TracingInterceptor tracingInterceptor,
+                     ReadYourWritesInterceptor readYourWritesInterceptor,
+                     AdmissionControlInterceptor admissionControlInterceptor,
+                     QueryTimeoutInterceptor queryTimeoutInterceptor,
+                     ObjectProvider<TaskDecorator> taskDecorators,
+                     @Value("${ships.query.asyncThreads:32}") int asyncThreads) {
+        this.metricsInterceptor = metricsInterceptor;
+        this.tracingInterceptor = tracingInterceptor;
+        this.readYourWritesInterceptor = readYourWritesInterceptor;
+        this.admissionControlInterceptor = admissionControlInterceptor;
+        this.queryTimeoutInterceptor = queryTimeoutInterceptor;
+        this.taskDecorators = taskDecorators;
+        this.asyncThreads = asyncThreads;
+    }
+
+    /**
+     * Runs the {@link java.util.concurrent.Callable}s of asynchronous handlers. The request thread's
+     * context that statements depend on, such as its query deadline, is carried over by the
+     * {@link TaskDecorator} beans.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor asyncRequestExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(asyncThreads);
+        executor.setMaxPoolSize(asyncThreads);
+        executor.setThreadNamePrefix("async-request-");
+        executor.setDaemon(true);
+        executor.setTaskDecorator(task -> {
+            Runnable decorated = task;
+            for (TaskDecorator decorator : (Iterable<TaskDecorator>) taskDecorators.orderedStream()::iterator)
+                decorated = decorator.decorate(decorated);
+            return decorated;
+        });
+        return executor;
+    }
 
     @Bean
     public ViewResolver internalResourceViewResolver() {
@@ -37,16 +105,67 @@ public class WebConfig implements WebMvcConfigurer {
         registry.addViewController("/").setViewName("index");
     }
 
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admissionControlInterceptor).addPathPatterns("/rest/**");
+        registry.addInterceptor(tracingInterceptor);
+        registry.addInterceptor(metricsInterceptor);
+        registry.addInterceptor(readYourWritesInterceptor);
+        registry.addInterceptor(queryTimeoutInterceptor).addPathPatterns("/rest/**");
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(asyncRequestExecutor());
+        configurer.registerCallableInterceptors(queryTimeoutInterceptor);
+    }
+
+    @Override
+    public void extendHandlerExceptionResolvers(List<HandlerExceptionResolver> resolvers) {
+        resolvers.add(0, queryTimeoutInterceptor);
+    }
+
+    /**
+     * Static resources are served under content-hash versioned URLs (rewritten in JSPs by the
+     * ResourceUrlEncodingFilter), so they can be cached for a year. Precompressed .gz/.br variants
+     * generated at build time are served when the client accepts them.
+     */
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry.addResourceHandler("/resources/**").addResourceLocations("/resources/");
+        registry.addResourceHandler("/resources/**")
+                .addResourceLocations("/resources/")
+                .setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic())
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver())
+                .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
     }
 
+    /**
+     * JSON stays first so that it is chosen whenever the client accepts it; Smile, CBOR and the
+     * binary ship format are only used when explicitly requested via the Accept header.
+     */
     @Override
     public void configureMessageConverters(List<HttpMessageConverter<?>> converters) {
         MappingJackson2HttpMessageConverter converter = new MappingJackson2HttpMessageConverter();
-        converter.getObjectMapper().setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE);
-        converter.getObjectMapper().setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        configureObjectMapper(converter.getObjectMapper());
         converters.add(converter);
+
+        MappingJackson2SmileHttpMessageConverter smileConverter = new MappingJackson2SmileHttpMessageConverter();
+        configureObjectMapper(smileConverter.getObjectMapper());
+        converters.add(smileConverter);
+
+        MappingJackson2CborHttpMessageConverter cborConverter = new MappingJackson2CborHttpMessageConverter();
+        configureObjectMapper(cborConverter.getObjectMapper());
+        converters.add(cborConverter);
+
+        converters.add(new ShipBinaryHttpMessageConverter());
+    }
+
+    private void configureObjectMapper(ObjectMapper objectMapper) {
+        objectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE);
+        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        objectMapper.registerModule(new SimpleModule("ShipSerializers")
+                .addSerializer(new ShipJsonSerializer())
+                .addSerializer(new ShipRecordJsonSerializer()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.space.controller;
+
+import com.space.service.FleetStatistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/admin/fleet-stats")
+public class FleetStatisticsController {
+
+    private final FleetStatistics fleetStatistics;
+
+    @Autowired
+    public FleetStatisticsController(FleetStatistics fleetStatistics) {
+        this.fleetStatistics = fleetStatistics;
+    }
+
+    /**
+     * Reloads the running fleet statistics, e.g. after the ship table was changed directly.
+     */
+    @PostMapping(value = "/rebuild")
+    public ResponseEntity<?> rebuild() {
+        this.fleetStatistics.rebuild();
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+}
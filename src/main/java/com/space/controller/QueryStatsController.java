@@ -0,0 +1,126 @@
+package com.space.controller;
+
+import com.space.metrics.QueryStatistics;
+import com.space.web.QueryGuard;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/admin/queries")
+public class QueryStatsController {
+
+    private final QueryStatistics queryStatistics;
+    private final EntityManagerFactory entityManagerFactory;
+    private final QueryGuard queryGuard;
+
+    @Autowired
+    public QueryStatsController(QueryStatistics queryStatistics, EntityManagerFactory entityManagerFactory,
+                                QueryGuard queryGuard) {
+        this.queryStatistics = queryStatistics;
+        this.entityManagerFactory = entityManagerFactory;
+        this.queryGuard = queryGuard;
+    }
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getQueryStats() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("fingerprints", this.queryStatistics.getAggregates().stream()
+                .map(this::toMap)
+                .collect(Collectors.toList()));
+        body.put("slowQueries", this.queryStatistics.getSlowQueries().stream()
+                .map(this::toMap)
+                .collect(Collectors.toList()));
+        body.put("hibernate", getHibernateStatistics());
+
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
+    @DeleteMapping
+    public ResponseEntity<?> resetQueryStats() {
+        this.queryStatistics.reset();
+        this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics().clear();
+
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/running")
+    public ResponseEntity<List<Map<String, Object>>> getRunningRequests() {
+        return new ResponseEntity<>(this.queryGuard.getRunning().stream()
+                .map(this::toMap)
+                .collect(Collectors.toList()), HttpStatus.OK);
+    }
+
+    @DeleteMapping(value = "/running/{id}")
+    public ResponseEntity<?> cancelRunningRequest(@PathVariable Long id) {
+        return new ResponseEntity<>(this.queryGuard.cancel(id) ? HttpStatus.OK : HttpStatus.NOT_FOUND);
+    }
+
+    private Map<String, Object> toMap(QueryGuard.Guard guard) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", guard.getId());
+        map.put("name", guard.getName());
+        map.put("startedAt", guard.getStartedAt());
+        map.put("timeoutMillis", guard.getTimeoutMillis());
+        map.put("statements", guard.getStatementCount());
+        map.put("cancelled", guard.getReason());
+        return map;
+    }
+
+    private Map<String, Object> toMap(QueryStatistics.Aggregate aggregate) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("fingerprint", aggregate.getFingerprint());
+        map.put("count", aggregate.getCount());
+        map.put("totalMillis", aggregate.getTotalNanos() / 1e6);
+        map.put("avgMillis", aggregate.getTotalNanos() / 1e6 / Math.max(1, aggregate.getCount()));
+        map.put("maxMillis", aggregate.getMaxNanos() / 1e6);
+        return map;
+    }
+
+    private Map<String, Object> toMap(QueryStatistics.SlowQuery slowQuery) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("fingerprint", slowQuery.getFingerprint());
+        map.put("sql", slowQuery.getSql());
+        map.put("millis", slowQuery.getNanos() / 1e6);
+        map.put("timestamp", slowQuery.getTimestamp());
+        return map;
+    }
+
+    private Map<String, Object> getHibernateStatistics() {
+        Statistics statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("enabled", statistics.isStatisticsEnabled());
+        if (!statistics.isStatisticsEnabled())
+            return map;
+
+        map.put("prepareStatementCount", statistics.getPrepareStatementCount());
+        map.put("queryExecutionCount", statistics.getQueryExecutionCount());
+        map.put("queryExecutionMaxTime", statistics.getQueryExecutionMaxTime());
+        map.put("queryExecutionMaxTimeQueryString", statistics.getQueryExecutionMaxTimeQueryString());
+        map.put("entityLoadCount", statistics.getEntityLoadCount());
+        map.put("entityFetchCount", statistics.getEntityFetchCount());
+        map.put("entityInsertCount", statistics.getEntityInsertCount());
+        map.put("entityUpdateCount", statistics.getEntityUpdateCount());
+        map.put("entityDeleteCount", statistics.getEntityDeleteCount());
+        map.put("secondLevelCacheHitCount", statistics.getSecondLevelCacheHitCount());
+        map.put("secondLevelCacheMissCount", statistics.getSecondLevelCacheMissCount());
+        map.put("queryCacheHitCount", statistics.getQueryCacheHitCount());
+        map.put("queryCacheMissCount", statistics.getQueryCacheMissCount());
+        map.put("transactionCount", statistics.getTransactionCount());
+        map.put("connectCount", statistics.getConnectCount());
+        return map;
+    }
+}
@@ -0,0 +1,73 @@
+package com.space.controller;
+
+import com.space.service.RatingRecomputer;
+import com.space.service.ShipService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the stored ratings equal to {@link com.space.service.RatingFormula}, which a generated
+ * column no longer guarantees since the formula became configurable: {@code POST /recompute}
+ * re-rates ships stored with an older formula version, and {@code GET /check} lists every ship
+ * whose stored rating differs from the current formula. Once a recompute is done, a non-empty
+ * list means a write path bypassed the formula.
+ */
+@RestController
+@RequestMapping("/admin/ratings")
+public class RatingController {
+
+    private final ShipService service;
+    private final RatingRecomputer ratingRecomputer;
+
+    @Autowired
+    public RatingController(ShipService service, RatingRecomputer ratingRecomputer) {
+        this.service = service;
+        this.ratingRecomputer = ratingRecomputer;
+    }
+
+    @GetMapping(value = "/check")
+    public ResponseEntity<Map<String, Object>> checkRatings() {
+        List<Long> mismatches = this.service.getRatingMismatches();
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("consistent", mismatches.isEmpty());
+        body.put("mismatchedIds", mismatches);
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/recompute")
+    public ResponseEntity<Map<String, Object>> getRecomputeProgress() {
+        return new ResponseEntity<>(toMap(this.ratingRecomputer.getProgress()), HttpStatus.OK);
+    }
+
+    @PostMapping(value = "/recompute")
+    public ResponseEntity<Map<String, Object>> startRecompute() {
+        if (!this.ratingRecomputer.start())
+            return new ResponseEntity<>(toMap(this.ratingRecomputer.getProgress()), HttpStatus.CONFLICT);
+
+        return new ResponseEntity<>(toMap(this.ratingRecomputer.getProgress()), HttpStatus.ACCEPTED);
+    }
+
+    private Map<String, Object> toMap(RatingRecomputer.Progress progress) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("state", progress.getState());
+        map.put("version", progress.getVersion());
+        map.put("total", progress.getTotal());
+        map.put("rated", progress.getRated());
+        map.put("chunks", progress.getChunks());
+        map.put("failedChunks", progress.getFailedChunks());
+        map.put("startedAt", progress.getStartedAt());
+        map.put("finishedAt", progress.getFinishedAt());
+        map.put("lastError", progress.getLastError());
+        return map;
+    }
+}
@@ -1,98 +1,374 @@
 package com.space.controller;
 
+import com.space.model.FleetAggregates;
+import com.space.model.ProdDates;
 import com.space.model.Ship;
+import com.space.model.ShipChange;
+import com.space.model.ShipField;
+import com.space.model.ShipFilter;
+import com.space.model.ShipRecord;
 import com.space.model.ShipType;
+import com.space.service.ShipChangeFeed;
+import com.space.service.ShipIngest;
 import com.space.service.ShipService;
+import com.space.service.ShipVersions;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import java.time.ZoneId;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 @RestController
 @RequestMapping("/rest/ships")
 public class ShipController {
-
+    private static final String RESPOND_ASYNC = "respond-async";
     private final ShipService shipService;
+    private final ShipChangeFeed changeFeed;
+    private final ShipIngest shipIngest;
+    private final ContentNegotiationManager contentNegotiationManager;
+    private final List<HttpMessageConverter<?>> messageConverters;
+    /**
+     * Formats each conditional endpoint can answer in, by handler method; see {@link #getRepresentations}.
+     */
+    private final Map<Method, List<MediaType>> representations = new ConcurrentHashMap<>();
+    private final int maxBatchSize;
+    private final int maxLeaderboardSize;
+    private final int maxChangesLimit;
+    private final String ingestRetryAfterSeconds;
 
     @Autowired
-    public ShipController(ShipService shipService) {
+    public ShipController(ShipService shipService, ShipChangeFeed changeFeed, ShipIngest shipIngest,
+                          ContentNegotiationManager contentNegotiationManager,
+                          RequestMappingHandlerAdapter handlerAdapter,
+                          @Value("${ships.batch.maxIds:100}") int maxBatchSize,
+                          @Value("${ships.leaderboard.maxLimit:100}") int maxLeaderboardSize,
+                          @Value("${ships.changelog.maxLimit:500}") int maxChangesLimit,
+                          @Value("${ships.ingest.retryAfterSeconds:1}") int ingestRetryAfterSeconds) {
         this.shipService = shipService;
+        this.changeFeed = changeFeed;
+        this.shipIngest = shipIngest;
+        this.contentNegotiationManager = contentNegotiationManager;
+        this.messageConverters = handlerAdapter.getMessageConverters();
+        this.ingestRetryAfterSeconds = String.valueOf(ingestRetryAfterSeconds);
+        this.maxBatchSize = maxBatchSize;
+        this.maxLeaderboardSize = maxLeaderboardSize;
+        this.maxChangesLimit = maxChangesLimit;
     }
 
     @GetMapping
-    public ResponseEntity<List<Ship>> getShipsList(@RequestParam(required = false) String name,
-                                                   @RequestParam(required = false) String planet,
-                                                   @RequestParam(required = false) ShipType shipType,
-                                                   @RequestParam(required = false) Long after,
-                                                   @RequestParam(required = false) Long before,
-                                                   @RequestParam(required = false) Boolean isUsed,
-                                                   @RequestParam(required = false) Double minSpeed,
-                                                   @RequestParam(required = false) Double maxSpeed,
-                                                   @RequestParam(required = false) Integer minCrewSize,
-                                                   @RequestParam(required = false) Integer maxCrewSize,
-                                                   @RequestParam(required = false) Double minRating,
-                                                   @RequestParam(required = false) Double maxRating,
-                                                   @RequestParam(required = false) ShipOrder order,
-                                                   @RequestParam(required = false) Integer pageNumber,
-                                                   @RequestParam(required = false) Integer pageSize) {
-
-        List<Ship> shipList = this.shipService.getFilteredShipList(name, planet, shipType, after, before,
-                isUsed, minSpeed, maxSpeed, minCrewSize, maxCrewSize, minRating, maxRating);
-
-        shipList = this.shipService.getShipsPerPage(shipList, pageNumber, pageSize, order);
-
-        return shipList == null || shipList.isEmpty()
-                ? new ResponseEntity<>(HttpStatus.NOT_FOUND)
-                : new ResponseEntity<>(shipList, HttpStatus.OK);
+    public Callable<ResponseEntity<List<ShipRecord>>> getShipsList(@RequestParam(required = false) String name,
+                                                                   @RequestParam(required = false) String planet,
+                                                                   @RequestParam(required = false) ShipType shipType,
+                                                                   @RequestParam(required = false) Long after,
+                                                                   @RequestParam(required = false) Long before,
+                                                                   @RequestParam(required = false) Boolean isUsed,
+                                                                   @RequestParam(required = false) Double minSpeed,
+                                                                   @RequestParam(required = false) Double maxSpeed,
+                                                                   @RequestParam(required = false) Integer minCrewSize,
+                                                                   @RequestParam(required = false) Integer maxCrewSize,
+                                                                   @RequestParam(required = false) Double minRating,
+                                                                   @RequestParam(required = false) Double maxRating,
+                                                                   @RequestParam(required = false) ShipOrder order,
+                                                                   @RequestParam(required = false) Integer pageNumber,
+                                                                   @RequestParam(required = false) Integer pageSize,
+                                                                   @RequestParam(required = false) String fields,
+                                                                   NativeWebRequest webRequest,
+                                                                   HttpServletResponse response) {
+        Set<ShipField> shipFields = parseFields(fields);
+        if (shipFields == null)
+            return () -> new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+
+        if (isNotModified(this.shipService.getFleetStamp(), webRequest, response))
+            return null;
+
+        ShipFilter filter = new ShipFilter(name, planet, shipType, after, before, isUsed, minSpeed, maxSpeed,
+                minCrewSize, maxCrewSize, minRating, maxRating);
+        return () -> {
+            List<ShipRecord> shipList = this.shipService.getShipsPage(filter, shipFields, order, pageNumber, pageSize);
+
+            return shipList == null || shipList.isEmpty()
+                    ? new ResponseEntity<>(HttpStatus.NOT_FOUND)
+                    : new ResponseEntity<>(shipList, HttpStatus.OK);
+        };
     }
 
     @GetMapping(value = "/count")
-    public ResponseEntity<Integer> getShipsCount(@RequestParam(required = false) String name,
-                                                 @RequestParam(required = false) String planet,
-                                                 @RequestParam(required = false) ShipType shipType,
-                                                 @RequestParam(required = false) Long after,
-                                                 @RequestParam(required = false) Long before,
-                                                 @RequestParam(required = false) Boolean isUsed,
-                                                 @RequestParam(required = false) Double minSpeed,
-                                                 @RequestParam(required = false) Double maxSpeed,
-                                                 @RequestParam(required = false) Integer minCrewSize,
-                                                 @RequestParam(required = false) Integer maxCrewSize,
-                                                 @RequestParam(required = false) Double minRating,
-                                                 @RequestParam(required = false) Double maxRating) {
-        Integer shipCount = this.shipService.getFilteredShipList(name, planet, shipType, after, before,
-                isUsed, minSpeed, maxSpeed, minCrewSize, maxCrewSize, minRating, maxRating).size();
-
-        return new ResponseEntity<>(shipCount, HttpStatus.OK);
+    public Callable<ResponseEntity<Integer>> getShipsCount(@RequestParam(required = false) String name,
+                                                           @RequestParam(required = false) String planet,
+                                                           @RequestParam(required = false) ShipType shipType,
+                                                           @RequestParam(required = false) Long after,
+                                                           @RequestParam(required = false) Long before,
+                                                           @RequestParam(required = false) Boolean isUsed,
+                                                           @RequestParam(required = false) Double minSpeed,
+                                                           @RequestParam(required = false) Double maxSpeed,
+                                                           @RequestParam(required = false) Integer minCrewSize,
+                                                           @RequestParam(required = false) Integer maxCrewSize,
+                                                           @RequestParam(required = false) Double minRating,
+                                                           @RequestParam(required = false) Double maxRating,
+                                                           NativeWebRequest webRequest,
+                                                           HttpServletResponse response) {
+        if (isNotModified(this.shipService.getFleetStamp(), webRequest, response))
+            return null;
+
+        ShipFilter filter = new ShipFilter(name, planet, shipType, after, before, isUsed, minSpeed, maxSpeed,
+                minCrewSize, maxCrewSize, minRating, maxRating);
+        return () -> {
+            Integer shipCount = this.shipService.getFilteredShipList(filter, EnumSet.of(ShipField.ID), null).size();
+
+            return new ResponseEntity<>(shipCount, HttpStatus.OK);
+        };
+    }
+
+    @GetMapping(value = "/facets")
+    public ResponseEntity<Map<String, Object>> getShipsFacets(@RequestParam(required = false) String name,
+                                                              @RequestParam(required = false) String planet,
+                                                              @RequestParam(required = false) ShipType shipType,
+                                                              @RequestParam(required = false) Long after,
+                                                              @RequestParam(required = false) Long before,
+                                                              @RequestParam(required = false) Boolean isUsed,
+                                                              @RequestParam(required = false) Double minSpeed,
+                                                              @RequestParam(required = false) Double maxSpeed,
+                                                              @RequestParam(required = false) Integer minCrewSize,
+                                                              @RequestParam(required = false) Integer maxCrewSize,
+                                                              @RequestParam(required = false) Double minRating,
+                                                              @RequestParam(required = false) Double maxRating,
+                                                              @RequestParam(required = false) String facets,
+                                                              NativeWebRequest webRequest,
+                                                              HttpServletResponse response) {
+        Set<ShipField> facetFields = parseFacets(facets);
+        if (facetFields == null)
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+
+        if (isNotModified(this.shipService.getFleetStamp(), webRequest, response))
+            return null;
+
+        Map<ShipField, Map<String, Long>> counts = this.shipService.getFacets(new ShipFilter(name, planet, shipType,
+                after, before, isUsed, minSpeed, maxSpeed, minCrewSize, maxCrewSize, minRating, maxRating),
+                facetFields);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        for (Map.Entry<ShipField, Map<String, Long>> facet : counts.entrySet())
+            body.put(facet.getKey().getFieldName(), facet.getValue());
+
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/leaderboard")
+    public ResponseEntity<List<ShipRecord>> getLeaderboard(@RequestParam(defaultValue = "RATING") ShipOrder order,
+                                                           @RequestParam(defaultValue = "DESC") Sort.Direction direction,
+                                                           @RequestParam(defaultValue = "10") Integer limit,
+                                                           @RequestParam(required = false) ShipType shipType,
+                                                           @RequestParam(required = false) String planet,
+                                                           NativeWebRequest webRequest,
+                                                           HttpServletResponse response) {
+        if (order != ShipOrder.RATING && order != ShipOrder.SPEED || limit < 1 || limit > maxLeaderboardSize)
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+
+        if (isNotModified(this.shipService.getFleetStamp(), webRequest, response))
+            return null;
+
+        List<ShipRecord> ships = this.shipService.getLeaderboard(ShipField.fromFieldName(order.getFieldName()),
+                direction, shipType, planet, limit);
+
+        return new ResponseEntity<>(ships, HttpStatus.OK);
+    }
+
+    /**
+     * Streams committed changes as Server-Sent Events; see {@link ShipChangeFeed}.
+     */
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                 @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
+        return this.changeFeed.subscribe(lastEventId != null ? lastEventId : lastEventIdParam);
+    }
+
+    /**
+     * Polls the change log of one shard: returns up to {@code limit} entries after the
+     * {@code after} cursor and the cursor to pass next time.
+     */
+    @GetMapping(value = "/changelog")
+    public ResponseEntity<Map<String, Object>> getChangelog(@RequestParam(defaultValue = "0") Integer shard,
+                                                            @RequestParam(defaultValue = "0") Long after,
+                                                            @RequestParam(defaultValue = "100") Integer limit) {
+        if (shard < 0 || shard >= this.shipService.getShardCount() || after < 0 || limit < 1
+                || limit > maxChangesLimit)
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+
+        List<ShipChange> changes = this.shipService.getChanges(shard, after, limit);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("shard", shard);
+        body.put("shards", this.shipService.getShardCount());
+        body.put("changes", changes);
+        body.put("next", changes.isEmpty() ? after : changes.get(changes.size() - 1).getSequence());
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/stats")
+    public ResponseEntity<Map<String, Object>> getShipsStats(@RequestParam(required = false) String name,
+                                                             @RequestParam(required = false) String planet,
+                                                             @RequestParam(required = false) ShipType shipType,
+                                                             @RequestParam(required = false) Long after,
+                                                             @RequestParam(required = false) Long before,
+                                                             @RequestParam(required = false) Boolean isUsed,
+                                                             @RequestParam(required = false) Double minSpeed,
+                                                             @RequestParam(required = false) Double maxSpeed,
+                                                             @RequestParam(required = false) Integer minCrewSize,
+                                                             @RequestParam(required = false) Integer maxCrewSize,
+                                                             @RequestParam(required = false) Double minRating,
+                                                             @RequestParam(required = false) Double maxRating,
+                                                             NativeWebRequest webRequest,
+                                                             HttpServletResponse response) {
+        if (isNotModified(this.shipService.getFleetStamp(), webRequest, response))
+            return null;
+
+        FleetAggregates aggregates = this.shipService.getAggregates(new ShipFilter(name, planet, shipType, after,
+                before, isUsed, minSpeed, maxSpeed, minCrewSize, maxCrewSize, minRating, maxRating));
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("count", aggregates.getCount());
+        body.put("usedCount", aggregates.getUsedCount());
+        body.put("averageSpeed", aggregates.getAverageSpeed());
+        body.put("averageRating", aggregates.getAverageRating());
+        body.put("averageCrewSize", aggregates.getAverageCrewSize());
+        body.put("byShipType", aggregates.getByShipType());
+        body.put("byPlanet", aggregates.getByPlanet());
+
+        long[] histogram = aggregates.getRatingHistogram();
+        if (histogram != null) {
+            List<Map<String, Object>> buckets = new ArrayList<>();
+            for (int i = 0; i < histogram.length; i++) {
+                Map<String, Object> bucket = new LinkedHashMap<>();
+                bucket.put("le", i < FleetAggregates.RATING_BUCKETS.length ? FleetAggregates.RATING_BUCKETS[i] : "+Inf");
+                bucket.put("count", histogram[i]);
+                buckets.add(bucket);
+            }
+            body.put("ratingHistogram", buckets);
+        }
+
+        return new ResponseEntity<>(body, HttpStatus.OK);
     }
 
     @GetMapping(value = "/{id}")
-    public ResponseEntity<Ship> getShip(@PathVariable Long id) {
+    public ResponseEntity<Ship> getShip(@PathVariable Long id, NativeWebRequest webRequest,
+                                        HttpServletResponse response) {
         if (isIdInvalid(id))
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
 
+        if (isNotModified(this.shipService.getShipStamp(id), webRequest, response))
+            return null;
+
         Ship ship = this.shipService.read(id);
         return ship == null
                 ? new ResponseEntity<>(HttpStatus.NOT_FOUND)
                 : new ResponseEntity<>(ship, HttpStatus.OK);
     }
 
+    /**
+     * Returns the ships in the order of {@code ids}; an id without a ship yields
+     * {@code {"id": <id>, "notFound": true}} in its place.
+     */
+    @GetMapping(value = "/batch")
+    public ResponseEntity<List<Object>> getShips(@RequestParam List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > this.maxBatchSize || ids.stream().anyMatch(this::isIdInvalid))
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+
+        List<ShipRecord> ships = this.shipService.readBatch(ids);
+        List<Object> body = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            if (ships.get(i) != null) {
+                body.add(ships.get(i));
+            } else {
+                Map<String, Object> notFound = new LinkedHashMap<>();
+                notFound.put("id", ids.get(i));
+                notFound.put("notFound", true);
+                body.add(notFound);
+            }
+        }
+
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
+    /**
+     * With {@code Prefer: respond-async} the ship is validated, queued for write-behind creation
+     * and answered with 202 and a tracking id; see {@link ShipIngest}.
+     */
     @PostMapping
-    public ResponseEntity<Ship> createShip(@RequestBody Ship ship) {
-        return ship == null
+    public ResponseEntity<?> createShip(@RequestBody Ship ship,
+                                        @RequestHeader(value = "Prefer", required = false) String prefer)
+            throws InterruptedException {
+        if (ship == null
                 || isNameInvalid(ship.getName())
                 || isPlanetInvalid(ship.getPlanet())
                 || ship.getShipType() == null
                 || isProdDateInvalid(ship.getProdDate())
                 || isSpeedInvalid(ship.getSpeed())
-                || isCrewSizeInvalid(ship.getCrewSize())
-                ?
-                new ResponseEntity<>(HttpStatus.BAD_REQUEST)
-                :
-                new ResponseEntity<>(this.shipService.create(ship), HttpStatus.OK);
+                || isCrewSizeInvalid(ship.getCrewSize()))
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+
+        if (prefer == null || !prefer.contains(RESPOND_ASYNC))
+            return new ResponseEntity<>(this.shipService.create(ship), HttpStatus.OK);
+
+        String trackingId = this.shipIngest.submit(ship);
+        if (trackingId == null)
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, this.ingestRetryAfterSeconds)
+                    .build();
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("trackingId", trackingId);
+        body.put("state", ShipIngest.State.QUEUED);
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                        .path("/rest/ships/ingest/{trackingId}")
+                        .buildAndExpand(trackingId)
+                        .toUri())
+                .header("Preference-Applied", RESPOND_ASYNC)
+                .body(body);
+    }
+
+    @GetMapping(value = "/ingest/{trackingId}")
+    public ResponseEntity<Map<String, Object>> getIngestStatus(@PathVariable String trackingId) {
+        ShipIngest.Status status = this.shipIngest.getStatus(trackingId);
+        if (status == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("trackingId", trackingId);
+        body.put("state", status.getState());
+        if (status.getShipId() != null)
+            body.put("shipId", status.getShipId());
+        if (status.getError() != null)
+            body.put("error", status.getError());
+        return new ResponseEntity<>(body, HttpStatus.OK);
     }
 
     @PostMapping(value = "/{id}")
@@ -106,10 +382,10 @@ public class ShipController {
                 || (ship.getCrewSize() != null && isCrewSizeInvalid(ship.getCrewSize())))
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
 
-        else if (this.shipService.update(ship, id) == null)
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-
-        return new ResponseEntity<>(this.shipService.update(ship, id), HttpStatus.OK);
+        Ship updated = this.shipService.update(ship, id);
+        return updated == null
+                ? new ResponseEntity<>(HttpStatus.NOT_FOUND)
+                : new ResponseEntity<>(updated, HttpStatus.OK);
     }
 
     @DeleteMapping(value = "/{id}")
@@ -122,6 +398,103 @@ public class ShipController {
                 : new ResponseEntity<>(HttpStatus.OK);
     }
 
+    /**
+     * Sets ETag/Last-Modified from the given version stamp and tells whether the
+     * client's copy is still current, in which case a 304 has already been prepared.
+     *
+     * @param stamp null when the response is read from a replica and so gets no validators
+     */
+    private boolean isNotModified(ShipVersions.Stamp stamp, NativeWebRequest webRequest,
+                                  HttpServletResponse response) {
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (stamp == null)
+            return false;
+        return webRequest.checkNotModified(stamp.getETag(getRepresentation(webRequest)), stamp.getLastModified());
+    }
+
+    /**
+     * @return the subtype of the format the response body will be negotiated to, picked the way
+     * the message converters are: the most specific accepted type, then converter order
+     */
+    private String getRepresentation(NativeWebRequest webRequest) {
+        List<MediaType> accepted;
+        try {
+            accepted = this.contentNegotiationManager.resolveMediaTypes(webRequest);
+        } catch (HttpMediaTypeNotAcceptableException e) {
+            accepted = Collections.singletonList(MediaType.ALL);
+        }
+        accepted = new ArrayList<>(accepted);
+        MediaType.sortBySpecificityAndQuality(accepted);
+
+        HandlerMethod handler = (HandlerMethod) webRequest.getAttribute(
+                HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        List<MediaType> representations = this.representations.computeIfAbsent(handler.getMethod(),
+                this::getRepresentations);
+        for (MediaType acceptedType : accepted)
+            for (MediaType representation : representations)
+                if (acceptedType.isCompatibleWith(representation))
+                    return representation.getSubtype();
+        return representations.get(0).getSubtype();
+    }
+
+    /**
+     * @return the concrete formats of the registered message converters that can write the body
+     * of the handler's response, in converter order
+     */
+    private List<MediaType> getRepresentations(Method handlerMethod) {
+        ResolvableType body = ResolvableType.forMethodReturnType(handlerMethod);
+        if (Callable.class.isAssignableFrom(body.resolve(Object.class)))
+            body = body.as(Callable.class).getGeneric(0);
+        if (ResponseEntity.class.isAssignableFrom(body.resolve(Object.class)))
+            body = body.as(ResponseEntity.class).getGeneric(0);
+        Class<?> bodyClass = body.resolve(Object.class);
+
+        List<MediaType> representations = new ArrayList<>();
+        for (HttpMessageConverter<?> converter : this.messageConverters) {
+            boolean canWrite = converter instanceof GenericHttpMessageConverter
+                    ? ((GenericHttpMessageConverter<?>) converter).canWrite(body.getType(), bodyClass, null)
+                    : converter.canWrite(bodyClass, null);
+            if (canWrite)
+                for (MediaType mediaType : converter.getSupportedMediaTypes())
+                    if (mediaType.isConcrete())
+                        representations.add(mediaType);
+        }
+        return representations;
+    }
+
+    /**
+     * Parses a comma-separated {@code fields} parameter; the id is always included.
+     *
+     * @return all fields when the parameter is absent, null when it names an unknown field
+     */
+    private Set<ShipField> parseFields(String fields) {
+        if (fields == null)
+            return ShipField.ALL;
+
+        Set<ShipField> shipFields = EnumSet.of(ShipField.ID);
+        for (String fieldName : fields.split(",")) {
+            ShipField field = ShipField.fromFieldName(fieldName.trim());
+            if (field == null)
+                return null;
+            shipFields.add(field);
+        }
+        return shipFields.size() == ShipField.ALL.size() ? ShipField.ALL : shipFields;
+    }
+
+    private Set<ShipField> parseFacets(String facets) {
+        if (facets == null)
+            return ShipField.FACETS;
+
+        Set<ShipField> facetFields = EnumSet.noneOf(ShipField.class);
+        for (String fieldName : facets.split(",")) {
+            ShipField field = ShipField.fromFieldName(fieldName.trim());
+            if (field == null || !ShipField.FACETS.contains(field))
+                return null;
+            facetFields.add(field);
+        }
+        return facetFields;
+    }
+
     private boolean isIdInvalid(Long id) {
         return id == null || id != Math.floor(id) || id <= 0;
     }
@@ -135,9 +508,7 @@ public class ShipController {
     }
 
     private boolean isProdDateInvalid(Date date) {
-        return date == null
-                || date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().getYear() < 2800
-                || date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().getYear() > 3019;
+        return date == null || !ProdDates.isValid(date.getTime());
     }
 
     private boolean isSpeedInvalid(Double speed) {
@@ -0,0 +1,69 @@
+package com.space.controller;
+
+import com.space.tracing.Trace;
+import com.space.tracing.Tracer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/admin/traces")
+public class TraceController {
+
+    private final Tracer tracer;
+
+    @Autowired
+    public TraceController(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<Map<String, Object>>> getSlowTraces(@RequestParam(required = false) Double minMillis,
+                                                                   @RequestParam(required = false) Integer limit) {
+        List<Map<String, Object>> traces = this.tracer.getSlowTraces().stream()
+                .filter(trace -> minMillis == null || trace.getDurationNanos() / 1e6 >= minMillis)
+                .limit(limit == null ? Long.MAX_VALUE : limit)
+                .map(this::toMap)
+                .collect(Collectors.toList());
+
+        return new ResponseEntity<>(traces, HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/{traceId}")
+    public ResponseEntity<Map<String, Object>> getTrace(@PathVariable String traceId) {
+        return this.tracer.getSlowTraces().stream()
+                .filter(trace -> trace.getTraceId().equals(traceId))
+                .findFirst()
+                .map(trace -> new ResponseEntity<>(toMap(trace), HttpStatus.OK))
+                .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    private Map<String, Object> toMap(Trace trace) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("traceId", trace.getTraceId());
+        map.put("name", trace.getName());
+        map.put("timestamp", trace.getTimestamp());
+        map.put("millis", trace.getDurationNanos() / 1e6);
+        map.put("spans", trace.getSpans().stream()
+                .map(span -> {
+                    Map<String, Object> spanMap = new LinkedHashMap<>();
+                    spanMap.put("name", span.getName());
+                    spanMap.put("depth", span.getDepth());
+                    spanMap.put("offsetMillis", span.getOffsetNanos() / 1e6);
+                    spanMap.put("millis", span.getDurationNanos() / 1e6);
+                    return spanMap;
+                })
+                .collect(Collectors.toList()));
+        return map;
+    }
+}
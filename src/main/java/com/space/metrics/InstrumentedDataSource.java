@@ -0,0 +1,134 @@
+package com.space.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource wrapper measuring connection acquisition time and the number of open connections.
+ * The application uses a plain DriverManagerDataSource without a pool, so these stand in for
+ * connection pool statistics.
+ * <p>
+ * Statements created from its connections are timed as well and reported to the registered
+ * {@link StatementListener}s, which may also veto an execution before it starts.
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final List<StatementListener> listeners = new CopyOnWriteArrayList<>();
+    private final MetricsRegistry.Histogram acquireTime;
+    private final MetricsRegistry.Counter acquired;
+
+    public InstrumentedDataSource(DataSource targetDataSource, MetricsRegistry registry) {
+        super(targetDataSource);
+        acquireTime = registry.histogram("cosmoport_jdbc_connection_acquire_duration_seconds",
+                "Time to obtain a JDBC connection");
+        acquired = registry.counter("cosmoport_jdbc_connections_acquired_total",
+                "JDBC connections obtained");
+        registry.gauge("cosmoport_jdbc_connections_open", "JDBC connections currently open",
+                openConnections::get);
+    }
+
+    public void addListener(StatementListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(StatementListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = super.getConnection();
+        return track(connection, start);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = super.getConnection(username, password);
+        return track(connection, start);
+    }
+
+    private Connection track(Connection connection, long start) {
+        acquireTime.recordNanos(System.nanoTime() - start);
+        acquired.increment();
+        openConnections.incrementAndGet();
+
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close") && !connection.isClosed())
+                        openConnections.decrementAndGet();
+
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement)
+                        return wrapStatement((Statement) result, args != null && args.length > 0 && args[0] instanceof String
+                                ? (String) args[0] : null);
+                    return result;
+                });
+    }
+
+    private Statement wrapStatement(Statement statement, String preparedSql) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getResultSet"))
+                        return wrapResultSet((ResultSet) invoke(statement, method, args));
+                    if (!method.getName().startsWith("execute"))
+                        return invoke(statement, method, args);
+
+                    String sql = args != null && args.length > 0 && args[0] instanceof String
+                            ? (String) args[0] : preparedSql;
+                    for (StatementListener listener : listeners)
+                        listener.statementStarting(statement);
+                    long start = System.nanoTime();
+                    try {
+                        Object result = invoke(statement, method, args);
+                        return result instanceof ResultSet ? wrapResultSet((ResultSet) result) : result;
+                    } finally {
+                        long nanos = System.nanoTime() - start;
+                        for (StatementListener listener : listeners) {
+                            listener.statementFinished(statement);
+                            listener.statementExecuted(sql, nanos);
+                        }
+                    }
+                });
+    }
+
+    private ResultSet wrapResultSet(ResultSet resultSet) {
+        if (resultSet == null || listeners.isEmpty())
+            return resultSet;
+
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(resultSet, method, args);
+                    if (method.getName().equals("next") && Boolean.TRUE.equals(result))
+                        for (StatementListener listener : listeners)
+                            listener.rowsFetched(1);
+                    return result;
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
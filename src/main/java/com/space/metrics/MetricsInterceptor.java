@@ -0,0 +1,64 @@
+package com.space.metrics;
+
+import com.space.web.AsyncHandlers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records the latency of every controller endpoint, labelled by handler method name.
+ */
+@Component
+public class MetricsInterceptor implements AsyncHandlerInterceptor {
+    private static final String START_ATTRIBUTE = MetricsInterceptor.class.getName() + ".start";
+
+    private final MetricsRegistry registry;
+    private final ConcurrentMap<Method, MetricsRegistry.Histogram> histograms = new ConcurrentHashMap<>();
+
+    @Autowired
+    public MetricsInterceptor(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC)
+            return true;
+        if (handler instanceof HandlerMethod)
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        if (start == null)
+            return;
+        request.removeAttribute(START_ATTRIBUTE);
+
+        Method method = ((HandlerMethod) handler).getMethod();
+        histograms.computeIfAbsent(method, m -> registry.histogram("cosmoport_http_request_duration_seconds",
+                "Controller endpoint latency", "endpoint", m.getDeclaringClass().getSimpleName() + "." + m.getName()))
+                .recordNanos(System.nanoTime() - (Long) start);
+    }
+
+    /**
+     * Ends the measurement when the handler returned an event stream, so that the connection's
+     * lifetime is not taken for the handler's latency. Any other asynchronous handler is measured
+     * until its async dispatch completes.
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        if (AsyncHandlers.returnsStream(handler))
+            afterCompletion(request, response, handler, null);
+    }
+}
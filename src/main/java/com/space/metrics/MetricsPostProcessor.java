@@ -0,0 +1,66 @@
+package com.space.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Instruments infrastructure beans: DataSources are wrapped in an {@link InstrumentedDataSource}
+ * reporting to every {@link StatementListener} bean, and every Spring Data repository gets a proxy that times each repository method call.
+ */
+@Component
+public class MetricsPostProcessor implements BeanPostProcessor {
+    private final ObjectFactory<MetricsRegistry> registry;
+    private final ObjectProvider<StatementListener> statementListeners;
+    private final ConcurrentMap<Method, MetricsRegistry.Histogram> histograms = new ConcurrentHashMap<>();
+
+    @Autowired
+    public MetricsPostProcessor(ObjectFactory<MetricsRegistry> registry,
+                                ObjectProvider<StatementListener> statementListeners) {
+        this.registry = registry;
+        this.statementListeners = statementListeners;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource) {
+            InstrumentedDataSource dataSource = new InstrumentedDataSource((DataSource) bean, registry.getObject());
+            statementListeners.orderedStream().forEach(dataSource::addListener);
+            return dataSource;
+        }
+        if (!(bean instanceof Repository))
+            return bean;
+
+        ProxyFactory proxyFactory = new ProxyFactory();
+        proxyFactory.setTarget(bean);
+        for (Class<?> type : ClassUtils.getAllInterfaces(bean))
+            if (Repository.class.isAssignableFrom(type))
+                proxyFactory.addInterface(type);
+        proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+            long start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                histogram(invocation.getMethod()).recordNanos(System.nanoTime() - start);
+            }
+        });
+        return proxyFactory.getProxy(bean.getClass().getClassLoader());
+    }
+
+    private MetricsRegistry.Histogram histogram(Method method) {
+        return histograms.computeIfAbsent(method, m -> registry.getObject().histogram(
+                "cosmoport_repository_query_duration_seconds", "Repository method latency",
+                "method", m.getName()));
+    }
+}
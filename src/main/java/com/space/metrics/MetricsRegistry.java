@@ -0,0 +1,155 @@
+package com.space.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Minimal in-process metrics registry rendered in the Prometheus text exposition format.
+ * <p>
+ * Metrics are looked up once and the returned handles are kept by the caller, so recording on
+ * the hot path is a couple of {@link LongAdder} increments without locking or allocation.
+ */
+@Component
+public class MetricsRegistry {
+    private static final double[] LATENCY_BUCKETS = {0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private final ConcurrentMap<String, Family> families = new ConcurrentHashMap<>();
+
+    /**
+     * @param labels label name/value pairs, e.g. {@code "endpoint", "getShip"}
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, "counter").metrics.computeIfAbsent(formatLabels(labels), k -> new Counter());
+    }
+
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, "histogram").metrics.computeIfAbsent(formatLabels(labels), k -> new Histogram());
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "gauge").metrics.put(formatLabels(labels), new Gauge(value));
+    }
+
+    public void writeTo(Writer writer) throws IOException {
+        for (Family family : families.values()) {
+            writer.write("# HELP " + family.name + " " + family.help + "\n");
+            writer.write("# TYPE " + family.name + " " + family.type + "\n");
+            for (Map.Entry<String, Metric> metric : family.metrics.entrySet())
+                metric.getValue().writeTo(writer, family.name, metric.getKey());
+        }
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, k -> new Family(name, help, type));
+        if (!family.type.equals(type))
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        return family;
+    }
+
+    private static String formatLabels(String... labels) {
+        if (labels.length % 2 != 0)
+            throw new IllegalArgumentException("Labels must be given as name/value pairs");
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            sb.append(sb.length() == 0 ? "" : ",").append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        return sb.toString();
+    }
+
+    private static String withLabel(String labels, String extra) {
+        return "{" + (labels.isEmpty() ? extra : labels + "," + extra) + "}";
+    }
+
+    private static final class Family {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<>();
+
+        private Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private interface Metric {
+        void writeTo(Writer writer, String name, String labels) throws IOException;
+    }
+
+    public static final class Counter implements Metric {
+        private final LongAdder count = new LongAdder();
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long amount) {
+            count.add(amount);
+        }
+
+        public long get() {
+            return count.sum();
+        }
+
+        @Override
+        public void writeTo(Writer writer, String name, String labels) throws IOException {
+            writer.write(name + (labels.isEmpty() ? "" : "{" + labels + "}") + " " + count.sum() + "\n");
+        }
+    }
+
+    public static final class Histogram implements Metric {
+        private final LongAdder[] buckets = new LongAdder[LATENCY_BUCKETS.length + 1];
+        private final LongAdder sumNanos = new LongAdder();
+
+        private Histogram() {
+            for (int i = 0; i < buckets.length; i++)
+                buckets[i] = new LongAdder();
+        }
+
+        public void recordNanos(long nanos) {
+            double seconds = nanos / 1e9;
+            int i = 0;
+            while (i < LATENCY_BUCKETS.length && seconds > LATENCY_BUCKETS[i])
+                i++;
+            buckets[i].increment();
+            sumNanos.add(nanos);
+        }
+
+        @Override
+        public void writeTo(Writer writer, String name, String labels) throws IOException {
+            long cumulative = 0;
+            for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                cumulative += buckets[i].sum();
+                writer.write(name + "_bucket" + withLabel(labels, "le=\"" + LATENCY_BUCKETS[i] + "\"") + " " + cumulative + "\n");
+            }
+            cumulative += buckets[LATENCY_BUCKETS.length].sum();
+            writer.write(name + "_bucket" + withLabel(labels, "le=\"+Inf\"") + " " + cumulative + "\n");
+            String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+            writer.write(name + "_sum" + suffix + " " + sumNanos.sum() / 1e9 + "\n");
+            writer.write(name + "_count" + suffix + " " + cumulative + "\n");
+        }
+    }
+
+    private static final class Gauge implements Metric {
+        private final DoubleSupplier value;
+
+        private Gauge(DoubleSupplier value) {
+            this.value = value;
+        }
+
+        @Override
+        public void writeTo(Writer writer, String name, String labels) throws IOException {
+            writer.write(name + (labels.isEmpty() ? "" : "{" + labels + "}") + " " + value.getAsDouble() + "\n");
+        }
+    }
+}
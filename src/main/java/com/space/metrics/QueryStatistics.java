@@ -0,0 +1,156 @@
+package com.space.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Aggregates SQL latency by query fingerprint and keeps a log of the most recent slow statements.
+ * A fingerprint is the statement with literals, numbers and IN-lists replaced by placeholders, so
+ * every filter shape maps to one entry no matter which values were bound.
+ */
+@Component
+public class QueryStatistics implements StatementListener {
+    private static final Logger log = LoggerFactory.getLogger(QueryStatistics.class);
+
+    private static final int MAX_FINGERPRINTS = 500;
+    private static final int MAX_SLOW_QUERIES = 100;
+    private static final String OTHER = "<other>";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final ConcurrentMap<String, Aggregate> aggregates = new ConcurrentHashMap<>();
+    private final Deque<SlowQuery> slowQueries = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger slowQueryCount = new AtomicInteger();
+    private final long slowQueryThresholdNanos;
+
+    public QueryStatistics(@Value("${ships.jdbc.slowQueryThresholdMillis:500}") long slowQueryThresholdMillis) {
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryThresholdMillis);
+    }
+
+    @Override
+    public void statementExecuted(String sql, long nanos) {
+        if (sql == null)
+            return;
+
+        String fingerprint = fingerprint(sql);
+        Aggregate aggregate = aggregates.get(fingerprint);
+        if (aggregate == null)
+            aggregate = aggregates.size() < MAX_FINGERPRINTS
+                    ? aggregates.computeIfAbsent(fingerprint, Aggregate::new)
+                    : aggregates.computeIfAbsent(OTHER, Aggregate::new);
+        aggregate.record(nanos);
+
+        if (nanos >= slowQueryThresholdNanos) {
+            log.warn("Slow query ({} ms): {}", TimeUnit.NANOSECONDS.toMillis(nanos), sql);
+            slowQueries.addFirst(new SlowQuery(fingerprint, sql, nanos));
+            if (slowQueryCount.incrementAndGet() > MAX_SLOW_QUERIES && slowQueries.pollLast() != null)
+                slowQueryCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return fingerprints ordered by total time spent, most expensive first
+     */
+    public List<Aggregate> getAggregates() {
+        List<Aggregate> result = new ArrayList<>(aggregates.values());
+        result.sort(Comparator.comparingLong(Aggregate::getTotalNanos).reversed());
+        return result;
+    }
+
+    public List<SlowQuery> getSlowQueries() {
+        return new ArrayList<>(slowQueries);
+    }
+
+    public void reset() {
+        aggregates.clear();
+        slowQueries.clear();
+        slowQueryCount.set(0);
+    }
+
+    static String fingerprint(String sql) {
+        String result = STRING_LITERAL.matcher(sql).replaceAll("?");
+        result = NUMBER.matcher(result).replaceAll("?");
+        result = IN_LIST.matcher(result).replaceAll("in (?+)");
+        return WHITESPACE.matcher(result).replaceAll(" ").trim().toLowerCase();
+    }
+
+    public static final class Aggregate {
+        private final String fingerprint;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Aggregate(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        private void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+    }
+
+    public static final class SlowQuery {
+        private final String fingerprint;
+        private final String sql;
+        private final long nanos;
+        private final long timestamp = System.currentTimeMillis();
+
+        private SlowQuery(String fingerprint, String sql, long nanos) {
+            this.fingerprint = fingerprint;
+            this.sql = sql;
+            this.nanos = nanos;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.space.metrics;
+
+import com.space.model.ShipFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pre-registered metric handles for the ship filter and query paths.
+ */
+@Component
+public class ShipMetrics {
+    private static final String[] FILTER_PARAMETERS = {"name", "planet", "shipType", "after", "before", "isUsed",
+            "minSpeed", "maxSpeed", "minCrewSize", "maxCrewSize", "minRating", "maxRating"};
+
+    private final MetricsRegistry.Counter[] filterParameterUsed = new MetricsRegistry.Counter[FILTER_PARAMETERS.length];
+    private final MetricsRegistry.Counter rowsScanned;
+    private final MetricsRegistry.Counter rowsReturned;
+    private final MetricsRegistry.Counter queriesExecuted;
+    private final MetricsRegistry.Counter queriesShared;
+
+    @Autowired
+    public ShipMetrics(MetricsRegistry registry) {
+        for (int i = 0; i < FILTER_PARAMETERS.length; i++)
+            filterParameterUsed[i] = registry.counter("cosmoport_filter_parameter_used_total",
+                    "Filter requests using the parameter", "parameter", FILTER_PARAMETERS[i]);
+
+        rowsScanned = registry.counter("cosmoport_filter_rows_scanned_total",
+                "Rows loaded from the database by filter queries");
+        rowsReturned = registry.counter("cosmoport_filter_rows_returned_total",
+                "Rows left after applying the filter");
+        queriesExecuted = registry.counter("cosmoport_filter_queries_total",
+                "Filter requests by how they were answered", "result", "executed");
+        queriesShared = registry.counter("cosmoport_filter_queries_total",
+                "Filter requests by how they were answered", "result", "shared");
+    }
+
+    public void filterRequested(ShipFilter filter) {
+        Object[] values = {filter.getName(), filter.getPlanet(), filter.getShipType(), filter.getAfter(),
+                filter.getBefore(), filter.isUsed(), filter.getMinSpeed(), filter.getMaxSpeed(),
+                filter.getMinCrewSize(), filter.getMaxCrewSize(), filter.getMinRating(), filter.getMaxRating()};
+        for (int i = 0; i < values.length; i++)
+            if (values[i] != null)
+                filterParameterUsed[i].increment();
+    }
+
+    public void filterExecuted(int scanned, int returned) {
+        queriesExecuted.increment();
+        rowsScanned.add(scanned);
+        rowsReturned.add(returned);
+    }
+
+    public void filterShared() {
+        queriesShared.increment();
+    }
+}
@@ -0,0 +1,29 @@
+package com.space.metrics;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Callback for JDBC statements executed through an {@link InstrumentedDataSource}.
+ * Invoked on the executing thread, so implementations must be cheap and thread-safe.
+ */
+public interface StatementListener {
+
+    void statementExecuted(String sql, long nanos);
+
+    /**
+     * Called before the statement executes; throwing prevents the execution.
+     */
+    default void statementStarting(Statement statement) throws SQLException {
+    }
+
+    /**
+     * Called once an execution that {@link #statementStarting(Statement)} let through has ended,
+     * successfully or not, before {@link #statementExecuted(String, long)}.
+     */
+    default void statementFinished(Statement statement) {
+    }
+
+    default void rowsFetched(int rows) {
+    }
+}
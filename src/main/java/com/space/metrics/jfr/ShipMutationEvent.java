@@ -0,0 +1,33 @@
+package com.space.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emitted for every ShipService create, update and delete.
+ */
+@Name("com.space.ShipMutation")
+@Label("Ship Mutation")
+@Category({"Cosmoport", "Ships"})
+@Description("Ship create, update or delete")
+@StackTrace(false)
+public class ShipMutationEvent extends Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Ship Id")
+    public long shipId;
+
+    @Label("Changed Fields")
+    public String changedFields;
+
+    @Label("Rating Computation Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long ratingNanos;
+}
@@ -0,0 +1,34 @@
+package com.space.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emitted for every ShipService filter query; the event duration covers the whole query
+ * including time spent waiting for a shared in-flight query.
+ */
+@Name("com.space.ShipQuery")
+@Label("Ship Query")
+@Category({"Cosmoport", "Ships"})
+@Description("Filtered ship list query")
+@StackTrace(false)
+public class ShipQueryEvent extends Event {
+
+    @Label("Filter Shape")
+    @Description("Names of the filter parameters in use")
+    public String filterShape;
+
+    @Label("Rows Scanned")
+    public int rowsScanned;
+
+    @Label("Rows Returned")
+    public int rowsReturned;
+
+    @Label("Cache Hit")
+    @Description("Result was shared from another in-flight or recent query")
+    public boolean cacheHit;
+}
@@ -0,0 +1,95 @@
+package com.space.model;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregates over a set of ships: totals, averages and counts per ship type and planet.
+ * The rating histogram is only available for the whole fleet.
+ */
+public final class FleetAggregates {
+    /**
+     * Upper bounds of the rating histogram buckets; the last bucket is unbounded.
+     */
+    public static final double[] RATING_BUCKETS = {0.5, 1, 2, 3, 5, 10, 20};
+
+    private final long count;
+    private final long usedCount;
+    private final double speedSum;
+    private final double ratingSum;
+    private final long crewSizeSum;
+    private final Map<ShipType, Long> byShipType;
+    private final Map<String, Long> byPlanet;
+    private final long[] ratingHistogram;
+
+    public FleetAggregates(long count, long usedCount, double speedSum, double ratingSum, long crewSizeSum,
+                           Map<ShipType, Long> byShipType, Map<String, Long> byPlanet, long[] ratingHistogram) {
+        this.count = count;
+        this.usedCount = usedCount;
+        this.speedSum = speedSum;
+        this.ratingSum = ratingSum;
+        this.crewSizeSum = crewSizeSum;
+        this.byShipType = Collections.unmodifiableMap(byShipType);
+        this.byPlanet = Collections.unmodifiableMap(byPlanet);
+        this.ratingHistogram = ratingHistogram;
+    }
+
+    /**
+     * @return the aggregates of both sets of ships, which must be disjoint
+     */
+    public FleetAggregates merge(FleetAggregates other) {
+        Map<ShipType, Long> shipTypes = new EnumMap<>(ShipType.class);
+        shipTypes.putAll(byShipType);
+        other.byShipType.forEach((shipType, typeCount) -> shipTypes.merge(shipType, typeCount, Long::sum));
+        Map<String, Long> planets = new TreeMap<>(byPlanet);
+        other.byPlanet.forEach((planet, planetCount) -> planets.merge(planet, planetCount, Long::sum));
+
+        long[] histogram = null;
+        if (ratingHistogram != null && other.ratingHistogram != null) {
+            histogram = ratingHistogram.clone();
+            for (int i = 0; i < histogram.length; i++)
+                histogram[i] += other.ratingHistogram[i];
+        }
+
+        return new FleetAggregates(count + other.count, usedCount + other.usedCount, speedSum + other.speedSum,
+                ratingSum + other.ratingSum, crewSizeSum + other.crewSizeSum, shipTypes, planets, histogram);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getUsedCount() {
+        return usedCount;
+    }
+
+    public double getAverageSpeed() {
+        return count == 0 ? 0 : speedSum / count;
+    }
+
+    public double getAverageRating() {
+        return count == 0 ? 0 : ratingSum / count;
+    }
+
+    public double getAverageCrewSize() {
+        return count == 0 ? 0 : (double) crewSizeSum / count;
+    }
+
+    public Map<ShipType, Long> getByShipType() {
+        return byShipType;
+    }
+
+    public Map<String, Long> getByPlanet() {
+        return byPlanet;
+    }
+
+    /**
+     * @return ships per {@link #RATING_BUCKETS} bucket plus one for ratings above the last bound,
+     * or null when not available
+     */
+    public long[] getRatingHistogram() {
+        return ratingHistogram == null ? null : ratingHistogram.clone();
+    }
+}
@@ -0,0 +1,49 @@
+package com.space.model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * Production date rules shared by validation and rating.
+ * <p>
+ * Production dates are local dates in the JVM's default time zone, the zone they are stored and
+ * read with. The start of every allowed year is resolved against that zone once, when the class
+ * is loaded, so that range checks and year lookups are plain comparisons on epoch millis and
+ * never consult the time zone rules again.
+ */
+public final class ProdDates {
+    public static final int MIN_YEAR = 2800;
+    public static final int MAX_YEAR = 3019;
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    /**
+     * Epoch millis of January 1st of MIN_YEAR .. MAX_YEAR + 1.
+     */
+    private static final long[] YEAR_STARTS = new long[MAX_YEAR - MIN_YEAR + 2];
+
+    static {
+        for (int i = 0; i < YEAR_STARTS.length; i++)
+            YEAR_STARTS[i] = LocalDate.of(MIN_YEAR + i, 1, 1).atStartOfDay(ZONE).toInstant().toEpochMilli();
+    }
+
+    private ProdDates() {
+    }
+
+    /**
+     * @return true if the date falls into one of the years MIN_YEAR .. MAX_YEAR
+     */
+    public static boolean isValid(long epochMillis) {
+        return epochMillis >= YEAR_STARTS[0] && epochMillis < YEAR_STARTS[YEAR_STARTS.length - 1];
+    }
+
+    public static int yearOf(long epochMillis) {
+        if (!isValid(epochMillis))
+            return Instant.ofEpochMilli(epochMillis).atZone(ZONE).getYear();
+
+        int index = Arrays.binarySearch(YEAR_STARTS, epochMillis);
+        return MIN_YEAR + (index >= 0 ? index : -index - 2);
+    }
+}
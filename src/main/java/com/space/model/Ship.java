@@ -33,9 +33,19 @@ public class Ship {
     @Column(name = "crewSize")
     private Integer crewSize;
 
+    /**
+     * Computed by {@link com.space.service.RatingFormula} whenever the ship is written. This column
+     * replaces the stored generated column the rating used to be, which kept it equal to the formula
+     * by construction but cannot follow a configurable formula. The same guarantee now rests on
+     * {@link com.space.service.RatingRecomputer}, which re-rates ships stored with an older formula
+     * version, and is verified by {@code GET /admin/ratings/check}.
+     */
     @Column(name = "rating")
     private Double rating;
 
+    @Column(name = "ratingVersion")
+    private Integer ratingVersion;
+
 //    public Ship() {
 //    }
 
@@ -110,4 +120,12 @@ public class Ship {
     public void setRating(Double rating) {
         this.rating = rating;
     }
+
+    public Integer getRatingVersion() {
+        return ratingVersion;
+    }
+
+    public void setRatingVersion(Integer ratingVersion) {
+        this.ratingVersion = ratingVersion;
+    }
 }
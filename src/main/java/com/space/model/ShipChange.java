@@ -0,0 +1,65 @@
+package com.space.model;
+
+import javax.persistence.*;
+
+/**
+ * An entry of the append-only ship change log. Entries are written in the same transaction as the
+ * change they describe, so a committed change always has its entry and a rolled back one never
+ * has; the sequence, which follows commit order (see {@link com.space.service.ShipChangeLog}),
+ * is the consumers' cursor.
+ */
+@Entity
+@Table(name = "ship_change_log")
+public class ShipChange {
+    public enum Type {CREATE, UPDATE, DELETE}
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "commitSequence")
+    private Long sequence;
+
+    @Column(name = "shipId")
+    private Long shipId;
+
+    @Column(name = "changeType")
+    @Enumerated(EnumType.STRING)
+    private Type type;
+
+    @Column(name = "changedAt")
+    private Long changedAt;
+
+    protected ShipChange() {
+    }
+
+    public ShipChange(Long shipId, Type type, long changedAt) {
+        this.shipId = shipId;
+        this.type = type;
+        this.changedAt = changedAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public Long getShipId() {
+        return shipId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return epoch millis at which the change was written
+     */
+    public Long getChangedAt() {
+        return changedAt;
+    }
+}
@@ -0,0 +1,48 @@
+package com.space.model;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Ship attributes that can be selected with the {@code fields} parameter. The field name is both
+ * the JSON property and the entity attribute used in JPQL projections.
+ */
+public enum ShipField {
+    ID("id"),
+    NAME("name"),
+    PLANET("planet"),
+    SHIP_TYPE("shipType"),
+    PROD_DATE("prodDate"),
+    IS_USED("isUsed"),
+    SPEED("speed"),
+    CREW_SIZE("crewSize"),
+    RATING("rating");
+
+    public static final Set<ShipField> ALL = Collections.unmodifiableSet(EnumSet.allOf(ShipField.class));
+
+    /**
+     * Categorical attributes matches can be counted by, see {@code GET /rest/ships/facets}.
+     */
+    public static final Set<ShipField> FACETS = Collections.unmodifiableSet(EnumSet.of(SHIP_TYPE, IS_USED, PLANET));
+
+    private final String fieldName;
+
+    ShipField(String fieldName) {
+        this.fieldName = fieldName;
+    }
+
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * @return the field with the given name, or null if there is none
+     */
+    public static ShipField fromFieldName(String fieldName) {
+        for (ShipField field : values())
+            if (field.fieldName.equals(fieldName))
+                return field;
+        return null;
+    }
+}
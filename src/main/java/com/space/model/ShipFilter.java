@@ -0,0 +1,156 @@
+package com.space.model;
+
+import java.util.Objects;
+
+/**
+ * Normalized set of filter parameters accepted by GET /rest/ships and /rest/ships/count.
+ * Empty name/planet substrings match every ship and are therefore stored as null, so that
+ * equivalent requests produce equal filters.
+ */
+public final class ShipFilter {
+    private final String name;
+    private final String planet;
+    private final ShipType shipType;
+    private final Long after;
+    private final Long before;
+    private final Boolean isUsed;
+    private final Double minSpeed;
+    private final Double maxSpeed;
+    private final Integer minCrewSize;
+    private final Integer maxCrewSize;
+    private final Double minRating;
+    private final Double maxRating;
+
+    public ShipFilter(String name, String planet, ShipType shipType, Long after, Long before, Boolean isUsed,
+                      Double minSpeed, Double maxSpeed, Integer minCrewSize, Integer maxCrewSize,
+                      Double minRating, Double maxRating) {
+        this.name = name == null || name.isEmpty() ? null : name;
+        this.planet = planet == null || planet.isEmpty() ? null : planet;
+        this.shipType = shipType;
+        this.after = after;
+        this.before = before;
+        this.isUsed = isUsed;
+        this.minSpeed = minSpeed;
+        this.maxSpeed = maxSpeed;
+        this.minCrewSize = minCrewSize;
+        this.maxCrewSize = maxCrewSize;
+        this.minRating = minRating;
+        this.maxRating = maxRating;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPlanet() {
+        return planet;
+    }
+
+    public ShipType getShipType() {
+        return shipType;
+    }
+
+    public Long getAfter() {
+        return after;
+    }
+
+    public Long getBefore() {
+        return before;
+    }
+
+    public Boolean isUsed() {
+        return isUsed;
+    }
+
+    public Double getMinSpeed() {
+        return minSpeed;
+    }
+
+    public Double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public Integer getMinCrewSize() {
+        return minCrewSize;
+    }
+
+    public Integer getMaxCrewSize() {
+        return maxCrewSize;
+    }
+
+    public Double getMinRating() {
+        return minRating;
+    }
+
+    public Double getMaxRating() {
+        return maxRating;
+    }
+
+    /**
+     * @return comma-separated names of the parameters in use, e.g. {@code "name,minSpeed"}
+     */
+    public String getShape() {
+        StringBuilder shape = new StringBuilder();
+        appendIfSet(shape, "name", name);
+        appendIfSet(shape, "planet", planet);
+        appendIfSet(shape, "shipType", shipType);
+        appendIfSet(shape, "after", after);
+        appendIfSet(shape, "before", before);
+        appendIfSet(shape, "isUsed", isUsed);
+        appendIfSet(shape, "minSpeed", minSpeed);
+        appendIfSet(shape, "maxSpeed", maxSpeed);
+        appendIfSet(shape, "minCrewSize", minCrewSize);
+        appendIfSet(shape, "maxCrewSize", maxCrewSize);
+        appendIfSet(shape, "minRating", minRating);
+        appendIfSet(shape, "maxRating", maxRating);
+        return shape.toString();
+    }
+
+    private static void appendIfSet(StringBuilder shape, String parameter, Object value) {
+        if (value != null)
+            shape.append(shape.length() == 0 ? "" : ",").append(parameter);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ShipFilter that = (ShipFilter) o;
+        return Objects.equals(name, that.name)
+                && Objects.equals(planet, that.planet)
+                && shipType == that.shipType
+                && Objects.equals(after, that.after)
+                && Objects.equals(before, that.before)
+                && Objects.equals(isUsed, that.isUsed)
+                && Objects.equals(minSpeed, that.minSpeed)
+                && Objects.equals(maxSpeed, that.maxSpeed)
+                && Objects.equals(minCrewSize, that.minCrewSize)
+                && Objects.equals(maxCrewSize, that.maxCrewSize)
+                && Objects.equals(minRating, that.minRating)
+                && Objects.equals(maxRating, that.maxRating);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, planet, shipType, after, before, isUsed,
+                minSpeed, maxSpeed, minCrewSize, maxCrewSize, minRating, maxRating);
+    }
+
+    @Override
+    public String toString() {
+        return "ShipFilter{" +
+                "name=" + name +
+                ", planet=" + planet +
+                ", shipType=" + shipType +
+                ", after=" + after +
+                ", before=" + before +
+                ", isUsed=" + isUsed +
+                ", minSpeed=" + minSpeed +
+                ", maxSpeed=" + maxSpeed +
+                ", minCrewSize=" + minCrewSize +
+                ", maxCrewSize=" + maxCrewSize +
+                ", minRating=" + minRating +
+                ", maxRating=" + maxRating +
+                '}';
+    }
+}
@@ -0,0 +1,138 @@
+package com.space.model;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Immutable, read-only view of a ship used on the list, filter and sort paths.
+ * <p>
+ * Numeric attributes are primitives and the production date is kept as epoch millis, so
+ * filtering and comparators never unbox and a row costs one object instead of an entity with
+ * its boxed fields, Date and persistence context bookkeeping. Records are created directly by
+ * JPQL constructor expressions in {@link com.space.repository.ShipRepository}; mutations still
+ * go through the {@link Ship} entity.
+ * <p>
+ * A record built from a projection holds only some of the attributes; the others are null or
+ * zero. {@link #getFields()} tells which attributes the record exposes to serializers.
+ */
+public final class ShipRecord {
+    private final Set<ShipField> fields;
+    private final long id;
+    private final String name;
+    private final String planet;
+    private final ShipType shipType;
+    private final long prodDate;
+    private final boolean isUsed;
+    private final double speed;
+    private final int crewSize;
+    private final double rating;
+
+    /**
+     * Creates a record from a full row. Every column but the id is nullable in the schema; a NULL
+     * reads as zero or false, the same as an attribute a projection did not select.
+     */
+    public ShipRecord(Long id, String name, String planet, ShipType shipType, Date prodDate, Boolean isUsed,
+                      Double speed, Integer crewSize, Double rating) {
+        this.fields = ShipField.ALL;
+        this.id = id;
+        this.name = name;
+        this.planet = planet;
+        this.shipType = shipType;
+        this.prodDate = prodDate == null ? 0 : prodDate.getTime();
+        this.isUsed = Boolean.TRUE.equals(isUsed);
+        this.speed = speed == null ? 0 : speed;
+        this.crewSize = crewSize == null ? 0 : crewSize;
+        this.rating = rating == null ? 0 : rating;
+    }
+
+    /**
+     * Creates a record from a projection row.
+     *
+     * @param fields  the attributes to expose
+     * @param columns for every {@link ShipField} ordinal, its position in {@code row}, or -1 when
+     *                the attribute was not selected; see {@link #columnIndex(Set)}
+     * @param row     the selected values
+     */
+    public ShipRecord(Set<ShipField> fields, int[] columns, Object[] row) {
+        this.fields = fields;
+        this.id = (Long) value(ShipField.ID, columns, row);
+        this.name = (String) value(ShipField.NAME, columns, row);
+        this.planet = (String) value(ShipField.PLANET, columns, row);
+        this.shipType = (ShipType) value(ShipField.SHIP_TYPE, columns, row);
+        Date prodDate = (Date) value(ShipField.PROD_DATE, columns, row);
+        this.prodDate = prodDate == null ? 0 : prodDate.getTime();
+        this.isUsed = Boolean.TRUE.equals(value(ShipField.IS_USED, columns, row));
+        Double speed = (Double) value(ShipField.SPEED, columns, row);
+        this.speed = speed == null ? 0 : speed;
+        Integer crewSize = (Integer) value(ShipField.CREW_SIZE, columns, row);
+        this.crewSize = crewSize == null ? 0 : crewSize;
+        Double rating = (Double) value(ShipField.RATING, columns, row);
+        this.rating = rating == null ? 0 : rating;
+    }
+
+    /**
+     * @param selected the selected attributes, in declaration order
+     * @return the column positions expected by {@link #ShipRecord(Set, int[], Object[])}
+     */
+    public static int[] columnIndex(Set<ShipField> selected) {
+        int[] columns = new int[ShipField.values().length];
+        Arrays.fill(columns, -1);
+        int column = 0;
+        for (ShipField field : selected)
+            columns[field.ordinal()] = column++;
+        return columns;
+    }
+
+    private static Object value(ShipField field, int[] columns, Object[] row) {
+        int column = columns[field.ordinal()];
+        return column < 0 ? null : row[column];
+    }
+
+    public Set<ShipField> getFields() {
+        return fields;
+    }
+
+    public boolean has(ShipField field) {
+        return fields.contains(field);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPlanet() {
+        return planet;
+    }
+
+    public ShipType getShipType() {
+        return shipType;
+    }
+
+    /**
+     * @return production date as epoch millis, the same value the API exposes
+     */
+    public long getProdDate() {
+        return prodDate;
+    }
+
+    public boolean isUsed() {
+        return isUsed;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public int getCrewSize() {
+        return crewSize;
+    }
+
+    public double getRating() {
+        return rating;
+    }
+}
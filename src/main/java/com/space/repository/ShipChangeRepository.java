@@ -0,0 +1,38 @@
+package com.space.repository;
+
+import com.space.model.ShipChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface ShipChangeRepository extends JpaRepository<ShipChange, Long> {
+
+    /**
+     * Keyset page of log entries after the cursor, in commit order.
+     */
+    @Query("select c from ShipChange c where c.sequence > :afterSequence order by c.sequence")
+    List<ShipChange> findChanges(@Param("afterSequence") long afterSequence, Pageable pageable);
+
+    /**
+     * Takes the next {@code count} sequence numbers; the row stays locked until the transaction ends.
+     *
+     * @return number of updated rows, 1 unless the sequence table is missing its row
+     */
+    @Modifying
+    @Query(value = "UPDATE ship_change_sequence SET lastSequence = lastSequence + :count", nativeQuery = true)
+    int advanceSequence(@Param("count") int count);
+
+    /**
+     * Inserts an entry numbered {@code offset} below the last sequence taken.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO ship_change_log(shipId, changeType, changedAt, commitSequence)"
+            + " SELECT :shipId, :changeType, :changedAt, lastSequence - :offset FROM ship_change_sequence",
+            nativeQuery = true)
+    int insertChange(@Param("shipId") long shipId, @Param("changeType") String changeType,
+                     @Param("changedAt") long changedAt, @Param("offset") int offset);
+}
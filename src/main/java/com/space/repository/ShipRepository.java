@@ -1,7 +1,61 @@
 package com.space.repository;
 
 import com.space.model.Ship;
+import com.space.model.ShipRecord;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface ShipRepository extends JpaRepository<Ship, Long> {
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+
+public interface ShipRepository extends JpaRepository<Ship, Long>, ShipRepositoryCustom {
+    String SELECT_RECORD = "select new com.space.model.ShipRecord(s.id, s.name, s.planet, s.shipType, s.prodDate,"
+            + " s.isUsed, s.speed, s.crewSize, s.rating) from Ship s";
+
+    @Query(SELECT_RECORD)
+    List<ShipRecord> findAllRecords();
+
+    @Query(SELECT_RECORD + " where s.id in :ids")
+    List<ShipRecord> findRecordsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Answered from the rating index.
+     */
+    @Query(SELECT_RECORD + " where s.rating between :minRating and :maxRating")
+    List<ShipRecord> findRecordsByRatingBetween(@Param("minRating") double minRating,
+                                                @Param("maxRating") double maxRating);
+
+    /**
+     * Deletes in a single statement, without loading the entity first.
+     *
+     * @return number of deleted rows
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from Ship s where s.id = :id")
+    int deleteShipById(@Param("id") Long id);
+
+    @Query("select count(s) from Ship s where s.ratingVersion is null or s.ratingVersion <> :version")
+    long countStaleRatings(@Param("version") int version);
+
+    /**
+     * Keyset page of ids whose rating was computed with another formula version.
+     */
+    @Query("select s.id from Ship s where (s.ratingVersion is null or s.ratingVersion <> :version)"
+            + " and s.id > :afterId order by s.id")
+    List<Long> findStaleRatingIds(@Param("version") int version, @Param("afterId") long afterId, Pageable pageable);
+
+    /**
+     * Loads and row-locks the ships, so that a concurrent update cannot be overwritten with
+     * stale field values. Plain reads are not blocked.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from Ship s where s.id in :ids")
+    List<Ship> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
 }
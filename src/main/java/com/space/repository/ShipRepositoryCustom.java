@@ -0,0 +1,57 @@
+package com.space.repository;
+
+import com.space.model.FleetAggregates;
+import com.space.model.ShipField;
+import com.space.model.ShipFilter;
+import com.space.model.ShipRecord;
+import com.space.model.ShipType;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.Set;
+
+public interface ShipRepositoryCustom {
+
+    /**
+     * Selects only the given attributes, optionally restricted to a rating range.
+     *
+     * @param columns   attributes to select; must contain {@link ShipField#ID}
+     * @param fields    attributes the returned records expose
+     * @param minRating lower rating bound, or null
+     * @param maxRating upper rating bound, or null
+     */
+    List<ShipRecord> findRecordColumns(Set<ShipField> columns, Set<ShipField> fields,
+                                       Double minRating, Double maxRating);
+
+    /**
+     * Aggregates the ships matching the filter with GROUP BY queries. Name and planet are
+     * matched with LIKE on their binary collation, so case-sensitively like the in-memory filter.
+     *
+     * @return aggregates without a rating histogram
+     */
+    FleetAggregates aggregate(ShipFilter filter);
+
+    /**
+     * Reads the first ships in the given order with ORDER BY ... LIMIT, so that the database can
+     * walk an index on the order column (optionally prefixed by ship type or planet) instead of
+     * sorting the fleet. Ties are broken by id in the same direction.
+     *
+     * @param by        {@link ShipField#RATING} or {@link ShipField#SPEED}
+     * @param shipType  ship type to restrict to, or null
+     * @param planet    exact planet to restrict to, or null
+     */
+    List<ShipRecord> findTop(ShipField by, Sort.Direction direction, ShipType shipType, String planet, int limit);
+
+    /**
+     * Reads one page of the ships matching the filter with ORDER BY ... LIMIT ... OFFSET, in
+     * ascending order of the given attribute and then of id. Name and planet are matched as by
+     * {@link #aggregate(ShipFilter)}.
+     *
+     * @param columns attributes to select; must contain {@link ShipField#ID} and {@code by}
+     * @param fields  attributes the returned records expose
+     * @param by      {@link ShipField#ID}, {@link ShipField#SPEED}, {@link ShipField#PROD_DATE} or
+     *                {@link ShipField#RATING}
+     */
+    List<ShipRecord> findPage(ShipFilter filter, Set<ShipField> columns, Set<ShipField> fields, ShipField by,
+                              int offset, int limit);
+}
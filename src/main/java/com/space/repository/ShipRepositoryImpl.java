@@ -0,0 +1,184 @@
+package com.space.repository;
+
+import com.space.model.FleetAggregates;
+import com.space.model.Ship;
+import com.space.model.ShipField;
+import com.space.model.ShipFilter;
+import com.space.model.ShipRecord;
+import com.space.model.ShipType;
+import org.springframework.data.domain.Sort;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Projection and aggregate queries for {@link ShipRepository} that are built at runtime.
+ */
+public class ShipRepositoryImpl implements ShipRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ShipRecord> findRecordColumns(Set<ShipField> columns, Set<ShipField> fields,
+                                              Double minRating, Double maxRating) {
+        Set<ShipField> selected = EnumSet.copyOf(columns);
+        String jpql = selected.stream()
+                .map(field -> "s." + field.getFieldName())
+                .collect(Collectors.joining(", ", "select ", " from Ship s"));
+        if (minRating != null || maxRating != null)
+            jpql += " where s.rating between :minRating and :maxRating";
+
+        Query query = entityManager.createQuery(jpql);
+        if (minRating != null || maxRating != null) {
+            query.setParameter("minRating", minRating == null ? -Double.MAX_VALUE : minRating);
+            query.setParameter("maxRating", maxRating == null ? Double.MAX_VALUE : maxRating);
+        }
+
+        int[] columnIndex = ShipRecord.columnIndex(selected);
+        List<?> rows = query.getResultList();
+        List<ShipRecord> records = new ArrayList<>(rows.size());
+        for (Object row : rows)
+            records.add(new ShipRecord(fields, columnIndex, row instanceof Object[] ? (Object[]) row : new Object[]{row}));
+        return records;
+    }
+
+    @Override
+    public FleetAggregates aggregate(ShipFilter filter) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Object[]> byType = builder.createQuery(Object[].class);
+        Root<Ship> ship = byType.from(Ship.class);
+        byType.multiselect(ship.get("shipType"),
+                builder.count(ship),
+                builder.sum(builder.<Integer>selectCase().when(builder.isTrue(ship.get("isUsed")), 1).otherwise(0)),
+                builder.sum(ship.<Double>get("speed")),
+                builder.sum(ship.<Double>get("rating")),
+                builder.sum(ship.<Integer>get("crewSize")))
+                .where(predicates(builder, ship, filter))
+                .groupBy(ship.get("shipType"));
+
+        long count = 0;
+        long usedCount = 0;
+        double speedSum = 0;
+        double ratingSum = 0;
+        long crewSizeSum = 0;
+        Map<ShipType, Long> shipTypes = new EnumMap<>(ShipType.class);
+        for (ShipType shipType : ShipType.values())
+            shipTypes.put(shipType, 0L);
+        for (Object[] row : entityManager.createQuery(byType).getResultList()) {
+            long typeCount = ((Number) row[1]).longValue();
+            shipTypes.put((ShipType) row[0], typeCount);
+            count += typeCount;
+            usedCount += ((Number) row[2]).longValue();
+            speedSum += ((Number) row[3]).doubleValue();
+            ratingSum += ((Number) row[4]).doubleValue();
+            crewSizeSum += ((Number) row[5]).longValue();
+        }
+
+        CriteriaQuery<Object[]> byPlanet = builder.createQuery(Object[].class);
+        ship = byPlanet.from(Ship.class);
+        byPlanet.multiselect(ship.get("planet"), builder.count(ship))
+                .where(predicates(builder, ship, filter))
+                .groupBy(ship.get("planet"));
+
+        Map<String, Long> planets = new TreeMap<>();
+        for (Object[] row : entityManager.createQuery(byPlanet).getResultList())
+            planets.put((String) row[0], ((Number) row[1]).longValue());
+
+        return new FleetAggregates(count, usedCount, speedSum, ratingSum, crewSizeSum, shipTypes, planets, null);
+    }
+
+    @Override
+    public List<ShipRecord> findTop(ShipField by, Sort.Direction direction, ShipType shipType, String planet,
+                                    int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ShipRecord> top = builder.createQuery(ShipRecord.class);
+        Root<Ship> ship = top.from(Ship.class);
+        top.select(builder.construct(ShipRecord.class, ship.get("id"), ship.get("name"), ship.get("planet"),
+                ship.get("shipType"), ship.get("prodDate"), ship.get("isUsed"), ship.get("speed"),
+                ship.get("crewSize"), ship.get("rating")));
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (shipType != null)
+            predicates.add(builder.equal(ship.get("shipType"), shipType));
+        if (planet != null)
+            predicates.add(builder.equal(ship.get("planet"), planet));
+        top.where(predicates.toArray(new Predicate[0]));
+
+        if (direction.isDescending())
+            top.orderBy(builder.desc(ship.get(by.getFieldName())), builder.desc(ship.get("id")));
+        else
+            top.orderBy(builder.asc(ship.get(by.getFieldName())), builder.asc(ship.get("id")));
+
+        return entityManager.createQuery(top).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public List<ShipRecord> findPage(ShipFilter filter, Set<ShipField> columns, Set<ShipField> fields, ShipField by,
+                                     int offset, int limit) {
+        Set<ShipField> selected = EnumSet.copyOf(columns);
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> page = builder.createQuery(Object[].class);
+        Root<Ship> ship = page.from(Ship.class);
+        page.multiselect(selected.stream()
+                .map(field -> ship.get(field.getFieldName()))
+                .collect(Collectors.toList()))
+                .where(predicates(builder, ship, filter))
+                .orderBy(builder.asc(ship.get(by.getFieldName())), builder.asc(ship.get("id")));
+
+        int[] columnIndex = ShipRecord.columnIndex(selected);
+        List<?> rows = entityManager.createQuery(page).setFirstResult(offset).setMaxResults(limit).getResultList();
+        List<ShipRecord> records = new ArrayList<>(rows.size());
+        for (Object row : rows)
+            records.add(new ShipRecord(fields, columnIndex, row instanceof Object[] ? (Object[]) row : new Object[]{row}));
+        return records;
+    }
+
+    private static Predicate[] predicates(CriteriaBuilder builder, Root<Ship> ship, ShipFilter filter) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.getName() != null)
+            predicates.add(builder.like(ship.get("name"), contains(filter.getName()), '\\'));
+        if (filter.getPlanet() != null)
+            predicates.add(builder.like(ship.get("planet"), contains(filter.getPlanet()), '\\'));
+        if (filter.getShipType() != null)
+            predicates.add(builder.equal(ship.get("shipType"), filter.getShipType()));
+        if (filter.getAfter() != null)
+            predicates.add(builder.greaterThanOrEqualTo(ship.get("prodDate"), new Date(filter.getAfter())));
+        if (filter.getBefore() != null)
+            predicates.add(builder.lessThanOrEqualTo(ship.get("prodDate"), new Date(filter.getBefore())));
+        if (filter.isUsed() != null)
+            predicates.add(builder.equal(ship.get("isUsed"), filter.isUsed()));
+        if (filter.getMinSpeed() != null)
+            predicates.add(builder.ge(ship.get("speed"), filter.getMinSpeed()));
+        if (filter.getMaxSpeed() != null)
+            predicates.add(builder.le(ship.get("speed"), filter.getMaxSpeed()));
+        if (filter.getMinCrewSize() != null)
+            predicates.add(builder.ge(ship.get("crewSize"), filter.getMinCrewSize()));
+        if (filter.getMaxCrewSize() != null)
+            predicates.add(builder.le(ship.get("crewSize"), filter.getMaxCrewSize()));
+        if (filter.getMinRating() != null)
+            predicates.add(builder.ge(ship.get("rating"), filter.getMinRating()));
+        if (filter.getMaxRating() != null)
+            predicates.add(builder.le(ship.get("rating"), filter.getMaxRating()));
+        return predicates.toArray(new Predicate[0]);
+    }
+
+    private static String contains(String value) {
+        return "%" + value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+}
@@ -0,0 +1,25 @@
+package com.space.routing;
+
+/**
+ * Pins the current thread's connections to the primary database, so that a client that has just
+ * written reads its own writes even when replicas lag behind. Set per request by
+ * {@link ReadYourWritesInterceptor}.
+ */
+public final class ReadYourWrites {
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    public static void pin() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    public static void clear() {
+        PINNED.remove();
+    }
+
+    public static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+}
@@ -0,0 +1,90 @@
+package com.space.routing;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Gives clients read-your-writes consistency across replicas: a mutating request sets a cookie
+ * that keeps the client's reads on the primary for {@code ships.datasource.stickyMillis}, which
+ * should exceed the replication lag.
+ * <p>
+ * As a {@link TaskDecorator}, it pins the thread that runs a task when the calling thread is pinned,
+ * so that work a request hands to another thread reads from the same database.
+ */
+@Component
+public class ReadYourWritesInterceptor implements AsyncHandlerInterceptor, TaskDecorator {
+    public static final String COOKIE = "ships-primary-until";
+
+    private final long stickyMillis;
+
+    @Autowired
+    public ReadYourWritesInterceptor(@Value("${ships.datasource.stickyMillis:5000}") long stickyMillis) {
+        this.stickyMillis = stickyMillis;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        long now = System.currentTimeMillis();
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            Cookie cookie = new Cookie(COOKIE, String.valueOf(now + stickyMillis));
+            cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+            cookie.setMaxAge((int) Math.max(1, stickyMillis / 1000));
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+            ReadYourWrites.pin();
+        } else if (primaryUntil(request) > now) {
+            ReadYourWrites.pin();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReadYourWrites.clear();
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        ReadYourWrites.clear();
+    }
+
+    @Override
+    public Runnable decorate(Runnable task) {
+        if (!ReadYourWrites.isPinned())
+            return task;
+
+        return () -> {
+            boolean pinned = ReadYourWrites.isPinned();
+            ReadYourWrites.pin();
+            try {
+                task.run();
+            } finally {
+                if (!pinned)
+                    ReadYourWrites.clear();
+            }
+        };
+    }
+
+    private static long primaryUntil(HttpServletRequest request) {
+        if (request.getCookies() == null)
+            return 0;
+        for (Cookie cookie : request.getCookies()) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,22 @@
+package com.space.routing;
+
+/**
+ * The shard the current thread's next connection is taken from; see {@link ShipShards}.
+ */
+final class ShardContext {
+    private static final ThreadLocal<Integer> SHARD = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    static Integer current() {
+        return SHARD.get();
+    }
+
+    static void set(Integer shard) {
+        if (shard == null)
+            SHARD.remove();
+        else
+            SHARD.set(shard);
+    }
+}
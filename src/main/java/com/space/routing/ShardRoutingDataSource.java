@@ -0,0 +1,40 @@
+package com.space.routing;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out connections of the shard bound by {@link ShipShards}, or of shard 0 when none is
+ * bound (schema checks at startup, test scripts).
+ * <p>
+ * A transaction starts before the repository call that binds its shard, so this must be wrapped
+ * in a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which defers
+ * fetching the physical connection to the first statement.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+    private final int shardCount;
+
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++)
+            targets.put(i, shards.get(i));
+
+        this.shardCount = shards.size();
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        afterPropertiesSet();
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+}
@@ -0,0 +1,186 @@
+package com.space.routing;
+
+import com.space.model.FleetAggregates;
+import com.space.model.Ship;
+import com.space.model.ShipField;
+import com.space.model.ShipRecord;
+import com.space.repository.ShipRepository;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Puts {@link ShipRepository} on top of the shards when there is more than one: calls keyed by
+ * an id or a ship go to that ship's shard, and fleet-wide queries are scattered to every shard and
+ * gathered, concatenating rows, summing counts, merging aggregates and merging per-shard top-K
+ * results into the global top-K; a page at some offset is the top-K with K = offset + page size,
+ * less the offset. Repository methods without a sharding rule fail rather than
+ * silently reading one shard, and a new ship whose id does not name its shard is not saved.
+ */
+@Component
+public class ShardingRepositoryPostProcessor implements BeanPostProcessor {
+    private final ObjectFactory<ShipShards> shards;
+
+    @Autowired
+    public ShardingRepositoryPostProcessor(ObjectFactory<ShipShards> shards) {
+        this.shards = shards;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof ShipRepository) || !shards.getObject().isSharded())
+            return bean;
+
+        ShipShards shipShards = shards.getObject();
+        return Proxy.newProxyInstance(bean.getClass().getClassLoader(), ClassUtils.getAllInterfaces(bean),
+                (proxy, method, args) -> route(shipShards, bean, method, args));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object route(ShipShards shards, Object target, Method method, Object[] args) {
+        if (method.getDeclaringClass() == Object.class)
+            return invoke(target, method, args);
+        if (method.getName().equals("findAll") && args != null)
+            throw new UnsupportedOperationException("findAll with arguments has no sharding rule");
+
+        switch (method.getName()) {
+            case "findById":
+            case "deleteShipById":
+                return shards.onShard(shards.shardOf((Long) args[0]), () -> invoke(target, method, args));
+            case "save":
+                int placement = shards.shardOf((Ship) args[0]);
+                return shards.onShard(placement, () -> checkId(shards, placement,
+                        (Ship) invoke(target, method, args)));
+            case "findAllByIdForUpdate":
+                return shards.onShard(singleShard(shards, (Collection<Long>) args[0]),
+                        () -> invoke(target, method, args));
+            case "findRecordsByIdIn":
+                Map<Integer, List<Long>> ids = ((Collection<Long>) args[0]).stream()
+                        .collect(Collectors.groupingBy(shards::shardOf));
+                return concat(shards.scatter(shard -> ids.containsKey(shard)
+                        ? invoke(target, method, new Object[]{ids.get(shard)})
+                        : Collections.emptyList()));
+            case "findAll":
+            case "findAllRecords":
+            case "findRecordsByRatingBetween":
+            case "findRecordColumns":
+                return concat(shards.scatter(shard -> invoke(target, method, args)));
+            case "countStaleRatings":
+                return shards.scatter(shard -> (Long) invoke(target, method, args)).stream()
+                        .mapToLong(Long::longValue)
+                        .sum();
+            case "findStaleRatingIds":
+                return concat(shards.scatter(shard -> invoke(target, method, args))).stream()
+                        .map(Long.class::cast)
+                        .sorted()
+                        .limit(((Pageable) args[2]).getPageSize())
+                        .collect(Collectors.toList());
+            case "findTop":
+                return concat(shards.scatter(shard -> invoke(target, method, args))).stream()
+                        .map(ShipRecord.class::cast)
+                        .sorted(topOrder((ShipField) args[0], (Sort.Direction) args[1]))
+                        .limit((Integer) args[4])
+                        .collect(Collectors.toList());
+            case "findPage":
+                int offset = (Integer) args[4];
+                int limit = (Integer) args[5];
+                Object[] shardArgs = args.clone();
+                shardArgs[4] = 0;
+                shardArgs[5] = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+                return concat(shards.scatter(shard -> invoke(target, method, shardArgs))).stream()
+                        .map(ShipRecord.class::cast)
+                        .sorted(ascending((ShipField) args[3]))
+                        .skip(offset)
+                        .limit(limit)
+                        .collect(Collectors.toList());
+            case "aggregate":
+                return shards.scatter(shard -> (FleetAggregates) invoke(target, method, args)).stream()
+                        .reduce(FleetAggregates::merge)
+                        .orElse(null);
+            default:
+                throw new UnsupportedOperationException(method.getName() + " has no sharding rule");
+        }
+    }
+
+    /**
+     * Fails the insert of a ship whose generated id names another shard than the one it was
+     * written to, which would make it unreachable by id and could collide with that shard's ids.
+     * The shard's auto-increment settings are then wrong; see init.sql.
+     */
+    private static Ship checkId(ShipShards shards, int shard, Ship saved) {
+        if (shards.shardOf(saved.getId()) != shard)
+            throw new IllegalStateException("Shard " + shard + " generated id " + saved.getId()
+                    + ", which belongs to shard " + shards.shardOf(saved.getId())
+                    + "; check its auto_increment_increment and auto_increment_offset");
+        return saved;
+    }
+
+    private static int singleShard(ShipShards shards, Collection<Long> ids) {
+        List<Integer> used = ids.stream().map(shards::shardOf).distinct().collect(Collectors.toList());
+        if (used.size() > 1)
+            throw new IllegalArgumentException("Ids " + ids + " span shards " + used);
+        return used.isEmpty() ? 0 : used.get(0);
+    }
+
+    private static Comparator<ShipRecord> topOrder(ShipField by, Sort.Direction direction) {
+        Comparator<ShipRecord> order = ascending(by);
+        return direction.isDescending() ? order.reversed() : order;
+    }
+
+    /**
+     * The order of {@code ORDER BY by, id}.
+     */
+    private static Comparator<ShipRecord> ascending(ShipField by) {
+        Comparator<ShipRecord> order;
+        switch (by) {
+            case SPEED:
+                order = Comparator.comparingDouble(ShipRecord::getSpeed);
+                break;
+            case RATING:
+                order = Comparator.comparingDouble(ShipRecord::getRating);
+                break;
+            case PROD_DATE:
+                order = Comparator.comparingLong(ShipRecord::getProdDate);
+                break;
+            case ID:
+                return Comparator.comparingLong(ShipRecord::getId);
+            default:
+                throw new IllegalArgumentException("Cannot order by " + by);
+        }
+        return order.thenComparingLong(ShipRecord::getId);
+    }
+
+    private static List<Object> concat(List<Object> results) {
+        List<Object> rows = new ArrayList<>();
+        for (Object result : results)
+            rows.addAll((Collection<?>) result);
+        return rows;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.space.routing;
+
+import com.space.model.Ship;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Placement and routing of ships across the shards configured in
+ * {@link com.space.config.AppConfig}; with a single database there is one shard and every
+ * method degenerates to a plain call.
+ * <p>
+ * A new ship is placed by its planet, hashed or, when {@code ships.sharding.planetRanges} lists
+ * the first planet name of every shard after the first, by range. Each shard hands out ids
+ * {@code shard + 1, shard + 1 + count, ...}, so an id alone names its shard and ids stay unique
+ * across the fleet. A ship keeps its shard, and its id, when its planet changes later.
+ * <p>
+ * Fleet-wide reads are scattered to all shards at once, on up to {@code ships.sharding.scatterThreads}
+ * threads besides the caller's. The calling thread's context that statements depend on, such as its
+ * query deadline, is carried over by the {@link TaskDecorator} beans.
+ */
+@Component
+public class ShipShards implements DisposableBean {
+    private final int count;
+    private final String[] planetRanges;
+    private final TransactionTemplate readTransaction;
+    private final ObjectProvider<TaskDecorator> taskDecorators;
+    private final ExecutorService scatterPool;
+
+    @Autowired
+    public ShipShards(DataSource dataSource, PlatformTransactionManager transactionManager,
+                      ObjectProvider<TaskDecorator> taskDecorators,
+                      @Value("${ships.sharding.planetRanges:}") String[] planetRanges,
+                      @Value("${ships.sharding.scatterThreads:8}") int scatterThreads) throws SQLException {
+        this.count = dataSource.isWrapperFor(ShardRoutingDataSource.class)
+                ? dataSource.unwrap(ShardRoutingDataSource.class).getShardCount()
+                : 1;
+        this.planetRanges = planetRanges;
+        if (planetRanges.length > 0 && planetRanges.length != count - 1)
+            throw new IllegalStateException("ships.sharding.planetRanges needs " + (count - 1)
+                    + " bounds for " + count + " shards");
+
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+
+        this.taskDecorators = taskDecorators;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.scatterPool = count > 1 ? Executors.newFixedThreadPool(scatterThreads, runnable -> {
+            Thread thread = new Thread(runnable, "shard-scatter-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isSharded() {
+        return count > 1;
+    }
+
+    public int shardOf(long id) {
+        return (int) Math.floorMod(id - 1, (long) count);
+    }
+
+    /**
+     * @return the shard an existing ship lives on, or the one a new ship is placed on
+     */
+    public int shardOf(Ship ship) {
+        if (ship.getId() != null)
+            return shardOf(ship.getId());
+
+        String planet = ship.getPlanet() == null ? "" : ship.getPlanet();
+        if (planetRanges.length == 0)
+            return Math.floorMod(planet.hashCode(), count);
+
+        int shard = 0;
+        while (shard < planetRanges.length && planet.compareTo(planetRanges[shard]) >= 0)
+            shard++;
+        return shard;
+    }
+
+    /**
+     * Runs the work against one shard. Inside a transaction the first shard used is kept for the
+     * rest of it, since its connection is; using another one fails.
+     */
+    public <T> T onShard(int shard, Supplier<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            Integer transactionShard = (Integer) TransactionSynchronizationManager.getResource(this);
+            if (transactionShard == null) {
+                TransactionSynchronizationManager.bindResource(this, shard);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(ShipShards.this);
+                    }
+                });
+            } else if (transactionShard != shard) {
+                throw new IllegalStateException("A transaction cannot span shards " + transactionShard
+                        + " and " + shard);
+            }
+        }
+
+        Integer previous = ShardContext.current();
+        ShardContext.set(shard);
+        try {
+            return work.get();
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    /**
+     * Runs the work on every shard in parallel, each in its own read-only transaction; the first
+     * shard runs on the calling thread.
+     *
+     * @return the per-shard results, by shard
+     */
+    public <T> List<T> scatter(IntFunction<T> work) {
+        List<FutureTask<T>> others = new ArrayList<>(count - 1);
+        for (int shard = 1; shard < count; shard++) {
+            int current = shard;
+            FutureTask<T> task = new FutureTask<>(() -> readShard(current, work));
+            others.add(task);
+            scatterPool.execute(decorate(task));
+        }
+
+        List<T> results = new ArrayList<>(count);
+        Object suspended = TransactionSynchronizationManager.unbindResourceIfPossible(this);
+        try {
+            results.add(readShard(0, work));
+            for (FutureTask<T> task : others)
+                results.add(task.get());
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            for (FutureTask<T> task : others)
+                task.cancel(false);
+            if (suspended != null)
+                TransactionSynchronizationManager.bindResource(this, suspended);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (scatterPool != null)
+            scatterPool.shutdownNow();
+    }
+
+    private <T> T readShard(int shard, IntFunction<T> work) {
+        return readTransaction.execute(status -> onShard(shard, () -> work.apply(shard)));
+    }
+
+    private Runnable decorate(Runnable task) {
+        Runnable decorated = task;
+        for (TaskDecorator decorator : (Iterable<TaskDecorator>) taskDecorators.orderedStream()::iterator)
+            decorated = decorator.decorate(decorated);
+        return decorated;
+    }
+}
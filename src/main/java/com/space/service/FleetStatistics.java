@@ -0,0 +1,181 @@
+package com.space.service;
+
+import com.space.model.FleetAggregates;
+import com.space.model.Ship;
+import com.space.model.ShipRecord;
+import com.space.model.ShipType;
+import com.space.repository.ShipRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Fleet-wide aggregates kept as running sums, counts and a rating histogram, so that reading
+ * them costs no query. The counters are loaded from the database on first use and then
+ * maintained by {@link ShipService} mutations and {@link RatingRecomputer}; like
+ * {@link ShipVersions}, they do not observe changes made to the ship table behind the
+ * application's back, which is what {@link #rebuild()} is for.
+ * <p>
+ * Each ship's last seen state is kept by id, so a change is applied by retracting the old
+ * contribution and adding the new one. The new state is re-read from the primary after commit
+ * rather than taken from the transaction, with the counters locked, once for all ships the
+ * transaction changed. Transactions changing the same ship may run their after-commit callbacks in
+ * either order, and whichever applies last still reads the latest committed row.
+ * Speeds and ratings are summed in hundredths, so retracting is exact.
+ */
+@Component
+public class FleetStatistics {
+    private final ShipRepository shipRepository;
+    private final TransactionTemplate primaryRead;
+
+    private final Map<Long, ShipRecord> ships = new HashMap<>();
+    private final long[] byShipType = new long[ShipType.values().length];
+    private final Map<String, Long> byPlanet = new HashMap<>();
+    private final long[] ratingHistogram = new long[FleetAggregates.RATING_BUCKETS.length + 1];
+    private long usedCount;
+    private long speedCents;
+    private long ratingCents;
+    private long crewSizeSum;
+    private boolean loaded;
+
+    @Autowired
+    public FleetStatistics(ShipRepository shipRepository, PlatformTransactionManager transactionManager) {
+        this.shipRepository = shipRepository;
+        // a transaction that is not read-only is routed to the primary, which has every committed change
+        this.primaryRead = new TransactionTemplate(transactionManager);
+        this.primaryRead.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public synchronized FleetAggregates getAggregates() {
+        if (!loaded)
+            rebuild();
+
+        Map<ShipType, Long> types = new EnumMap<>(ShipType.class);
+        for (ShipType shipType : ShipType.values())
+            types.put(shipType, byShipType[shipType.ordinal()]);
+
+        return new FleetAggregates(ships.size(), usedCount, speedCents / 100d, ratingCents / 100d, crewSizeSum,
+                types, new TreeMap<>(byPlanet), ratingHistogram.clone());
+    }
+
+    /**
+     * Reloads the counters from the database.
+     */
+    public synchronized void rebuild() {
+        ships.clear();
+        byPlanet.clear();
+        Arrays.fill(byShipType, 0);
+        Arrays.fill(ratingHistogram, 0);
+        usedCount = speedCents = ratingCents = crewSizeSum = 0;
+
+        for (ShipRecord ship : shipRepository.findAllRecords())
+            put(ship);
+        loaded = true;
+    }
+
+    /**
+     * Records that a ship was saved; inside a transaction its row is re-read after commit.
+     */
+    public void shipSaved(Ship ship) {
+        shipChanged(ship.getId());
+    }
+
+    /**
+     * Records that a ship was deleted; inside a transaction this is deferred until after commit.
+     */
+    public void shipDeleted(Long id) {
+        shipChanged(id);
+    }
+
+    private void shipChanged(Long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh(Collections.singleton(id));
+            return;
+        }
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof ChangedShips && ((ChangedShips) synchronization).owner == this) {
+                ((ChangedShips) synchronization).ids.add(id);
+                return;
+            }
+        }
+        ChangedShips changed = new ChangedShips(this);
+        changed.ids.add(id);
+        TransactionSynchronizationManager.registerSynchronization(changed);
+    }
+
+    /**
+     * Replaces the given ships' contributions with their committed rows, dropping the ones
+     * that no longer exist.
+     */
+    private synchronized void refresh(Set<Long> ids) {
+        if (!loaded)
+            return;
+
+        List<ShipRecord> records = primaryRead.execute(status -> shipRepository.findRecordsByIdIn(ids));
+        for (Long id : ids)
+            remove(id);
+        for (ShipRecord record : records)
+            put(record);
+    }
+
+    private void put(ShipRecord ship) {
+        remove(ship.getId());
+        ships.put(ship.getId(), ship);
+        add(ship, 1);
+    }
+
+    private void remove(Long id) {
+        ShipRecord previous = ships.remove(id);
+        if (previous != null)
+            add(previous, -1);
+    }
+
+    private void add(ShipRecord ship, int sign) {
+        byShipType[ship.getShipType().ordinal()] += sign;
+        byPlanet.merge(ship.getPlanet(), (long) sign, (a, b) -> a + b == 0 ? null : a + b);
+        ratingHistogram[bucket(ship.getRating())] += sign;
+        if (ship.isUsed())
+            usedCount += sign;
+        speedCents += sign * Math.round(ship.getSpeed() * 100);
+        ratingCents += sign * Math.round(ship.getRating() * 100);
+        crewSizeSum += sign * ship.getCrewSize();
+    }
+
+    private static final class ChangedShips extends TransactionSynchronizationAdapter {
+        private final FleetStatistics owner;
+        private final Set<Long> ids = new LinkedHashSet<>();
+
+        private ChangedShips(FleetStatistics owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void afterCommit() {
+            owner.refresh(ids);
+        }
+    }
+
+    private static int bucket(double rating) {
+        double[] bounds = FleetAggregates.RATING_BUCKETS;
+        for (int i = 0; i < bounds.length; i++)
+            if (rating <= bounds[i])
+                return i;
+        return bounds.length;
+    }
+}
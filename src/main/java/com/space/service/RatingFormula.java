@@ -0,0 +1,51 @@
+package com.space.service;
+
+import com.space.model.ProdDates;
+import com.space.model.Ship;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The current rating formula:
+ * {@code round2(coefficient * speed * (isUsed ? usedFactor : 1) / (currentYear - prodYear + 1))}.
+ * <p>
+ * Every stored rating records the {@link #getVersion() version} it was computed with. Changing
+ * any of the {@code ships.rating.*} parameters must come with a new {@code ships.rating.version};
+ * ships rated with an older version are then stale until {@link RatingRecomputer} re-rates them.
+ */
+@Component
+public class RatingFormula {
+    private final int version;
+    private final double coefficient;
+    private final double usedFactor;
+    private final int currentYear;
+
+    public RatingFormula(@Value("${ships.rating.version:1}") int version,
+                         @Value("${ships.rating.coefficient:80}") double coefficient,
+                         @Value("${ships.rating.usedFactor:0.5}") double usedFactor,
+                         @Value("${ships.rating.currentYear:3019}") int currentYear) {
+        this.version = version;
+        this.coefficient = coefficient;
+        this.usedFactor = usedFactor;
+        this.currentYear = currentYear;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public Double rate(Ship ship) {
+        double wearFactor = ship.isUsed() ? usedFactor : 1.0;
+        int prodYear = ProdDates.yearOf(ship.getProdDate().getTime());
+        double rating = (coefficient * ship.getSpeed() * wearFactor) / (currentYear - prodYear + 1d);
+        return (double) Math.round(rating * 100) / 100;
+    }
+
+    /**
+     * Sets the rating and the formula version on the ship.
+     */
+    public void apply(Ship ship) {
+        ship.setRating(rate(ship));
+        ship.setRatingVersion(version);
+    }
+}
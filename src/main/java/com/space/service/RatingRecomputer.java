@@ -0,0 +1,232 @@
+package com.space.service;
+
+import com.space.model.Ship;
+import com.space.model.ShipChange;
+import com.space.repository.ShipRepository;
+import com.space.routing.ShipShards;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Re-rates every ship whose rating was computed with an older {@link RatingFormula} version.
+ * Together with {@code GET /admin/ratings/check}, this is what keeps the stored rating equal to
+ * the formula now that it is a plain column rather than a generated one.
+ * <p>
+ * A coordinator thread walks the stale ids in keyset pages of {@code ships.rating.recompute.chunkSize}
+ * and hands each page to one of {@code ships.rating.recompute.threads} workers. Every chunk is
+ * its own short transaction that row-locks only the ships in it, and workers pause for
+ * {@code ships.rating.recompute.pauseMillis} after each chunk, so reads and regular updates keep
+ * being served while the fleet is re-rated. Ships created or updated meanwhile are rated with
+ * the current formula by {@link ShipService} and are skipped. On a sharded fleet a chunk is
+ * split into one transaction per shard.
+ */
+@Component
+public class RatingRecomputer implements DisposableBean {
+    public enum State {IDLE, RUNNING, DONE, FAILED}
+
+    private final ShipRepository shipRepository;
+    private final RatingFormula ratingFormula;
+    private final ShipVersions shipVersions;
+    private final FleetStatistics fleetStatistics;
+    private final ShipChangeFeed changeFeed;
+    private final ShipChangeLog changeLog;
+    private final ShipShards shipShards;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService coordinator;
+    private final ExecutorService workers;
+    private final int threads;
+    private final int chunkSize;
+    private final long pauseMillis;
+
+    private volatile Progress progress = new Progress(0, 0, State.IDLE);
+
+    @Autowired
+    public RatingRecomputer(ShipRepository shipRepository, RatingFormula ratingFormula, ShipVersions shipVersions,
+                            FleetStatistics fleetStatistics, ShipChangeFeed changeFeed,
+                            ShipChangeLog changeLog, ShipShards shipShards,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${ships.rating.recompute.threads:2}") int threads,
+                            @Value("${ships.rating.recompute.chunkSize:500}") int chunkSize,
+                            @Value("${ships.rating.recompute.pauseMillis:50}") long pauseMillis) {
+        this.shipRepository = shipRepository;
+        this.ratingFormula = ratingFormula;
+        this.shipVersions = shipVersions;
+        this.fleetStatistics = fleetStatistics;
+        this.changeFeed = changeFeed;
+        this.changeLog = changeLog;
+        this.shipShards = shipShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+        this.coordinator = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "rating-recompute"));
+        AtomicInteger workerCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads,
+                runnable -> daemon(runnable, "rating-recompute-" + workerCount.incrementAndGet()));
+    }
+
+    /**
+     * Starts a recompute unless one is already running.
+     *
+     * @return false if a recompute is already running
+     */
+    public synchronized boolean start() {
+        if (progress.state == State.RUNNING)
+            return false;
+
+        int version = ratingFormula.getVersion();
+        Progress started = new Progress(version, shipRepository.countStaleRatings(version), State.RUNNING);
+        progress = started;
+        coordinator.execute(() -> run(started));
+        return true;
+    }
+
+    public Progress getProgress() {
+        return progress;
+    }
+
+    @Override
+    public void destroy() {
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void run(Progress progress) {
+        Semaphore permits = new Semaphore(threads);
+        try {
+            long afterId = 0;
+            while (true) {
+                List<Long> ids = shipRepository.findStaleRatingIds(progress.version, afterId,
+                        PageRequest.of(0, chunkSize));
+                if (ids.isEmpty())
+                    break;
+                afterId = ids.get(ids.size() - 1);
+
+                permits.acquire();
+                workers.execute(() -> {
+                    try {
+                        rateChunk(ids, progress);
+                        Thread.sleep(pauseMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (RuntimeException e) {
+                        progress.failedChunks.incrementAndGet();
+                        progress.lastError = e.toString();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            permits.acquire(threads);
+            progress.finish(progress.failedChunks.get() == 0 ? State.DONE : State.FAILED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progress.finish(State.FAILED);
+        } catch (RuntimeException e) {
+            progress.lastError = e.toString();
+            progress.finish(State.FAILED);
+        }
+    }
+
+    private void rateChunk(List<Long> ids, Progress progress) {
+        Map<Integer, List<Long>> byShard = ids.stream().collect(Collectors.groupingBy(shipShards::shardOf));
+        for (List<Long> shardIds : byShard.values())
+            rateShardChunk(shardIds, progress);
+        progress.chunks.incrementAndGet();
+    }
+
+    private void rateShardChunk(List<Long> ids, Progress progress) {
+        transactionTemplate.execute(status -> {
+            for (Ship ship : shipRepository.findAllByIdForUpdate(ids)) {
+                if (ship.getRatingVersion() != null && ship.getRatingVersion() == progress.version)
+                    continue;
+                ratingFormula.apply(ship);
+                changeLog.record(ship.getId(), ShipChange.Type.UPDATE);
+                shipVersions.shipChanged(ship.getId());
+                fleetStatistics.shipSaved(ship);
+                changeFeed.shipSaved(ShipChange.Type.UPDATE, ship);
+                progress.rated.incrementAndGet();
+            }
+            return null;
+        });
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    public static final class Progress {
+        private final int version;
+        private final long total;
+        private final long startedAt = System.currentTimeMillis();
+        private final AtomicLong rated = new AtomicLong();
+        private final AtomicLong chunks = new AtomicLong();
+        private final AtomicLong failedChunks = new AtomicLong();
+        private volatile State state;
+        private volatile long finishedAt;
+        private volatile String lastError;
+
+        private Progress(int version, long total, State state) {
+            this.version = version;
+            this.total = total;
+            this.state = state;
+        }
+
+        private void finish(State state) {
+            this.finishedAt = System.currentTimeMillis();
+            this.state = state;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getRated() {
+            return rated.get();
+        }
+
+        public long getChunks() {
+            return chunks.get();
+        }
+
+        public long getFailedChunks() {
+            return failedChunks.get();
+        }
+
+        public long getStartedAt() {
+            return startedAt;
+        }
+
+        public long getFinishedAt() {
+            return finishedAt;
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+    }
+}
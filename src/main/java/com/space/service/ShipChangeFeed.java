@@ -0,0 +1,406 @@
+package com.space.service;
+
+import com.space.model.Ship;
+import com.space.model.ShipChange;
+import com.space.model.ShipRecord;
+import com.space.repository.ShipRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes committed ship mutations to Server-Sent Events subscribers.
+ * <p>
+ * Every change gets a sequence number, sent as the SSE event id {@code <epoch>-<sequence>}, where
+ * the epoch tells this run of the application from earlier ones whose sequences restarted from zero.
+ * The last {@code ships.feed.historySize} changes are retained so that a reconnecting client resumes
+ * after its {@code Last-Event-ID}. When the requested position has already left the history, or
+ * belongs to another epoch, the client gets a "reset" event and should reload the data it shows
+ * before applying further changes.
+ * <p>
+ * An event carries the ship's row as re-read from the primary after commit, once for all ships the
+ * transaction changed, rather than the transaction's own copy. Reading and sequencing happen under
+ * one lock, so when transactions changing the same ship run their after-commit callbacks in either
+ * order, the event sequenced last still holds the latest committed row; a ship whose row is gone is
+ * published as deleted.
+ * <p>
+ * Each subscriber has a queue of {@code ships.feed.subscriberBuffer} events drained by a small
+ * sender pool, so a slow connection never blocks the mutation that published the change. A
+ * subscriber whose queue overflows misses the changes that did not fit: it is sent the events
+ * already queued, then a "reset" event with the sequence of the first change it missed, and is
+ * disconnected. It should reload and reconnect with the reset's id.
+ * A send that takes longer than {@code ships.feed.sendTimeoutMillis} disconnects its subscriber
+ * too. The blocked write cannot be interrupted, so the pool gets another thread until it returns,
+ * and stalled clients never hold up the others.
+ * Like {@link ShipVersions}, only changes made through {@link ShipService} are observed.
+ */
+@Component
+public class ShipChangeFeed implements DisposableBean {
+    private static final int IDLE = 0;
+    private static final int SENDING = 1;
+    private static final int ABANDONED = 2;
+
+    private final String epoch = Long.toHexString(System.currentTimeMillis());
+    private final ShipRepository shipRepository;
+    private final TransactionTemplate primaryRead;
+    private final Object publishLock = new Object();
+    private final Event[] history;
+    private final int subscriberBuffer;
+    private final long timeoutMillis;
+    private final long sendTimeoutNanos;
+    private final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+    // includes subscribers already dropped for overflowing while their send is blocked
+    private final Set<Subscriber> sending = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor senders;
+    private final ScheduledExecutorService watchdog;
+    private long lastSequence;
+
+    @Autowired
+    public ShipChangeFeed(ShipRepository shipRepository, PlatformTransactionManager transactionManager,
+                          @Value("${ships.feed.historySize:1000}") int historySize,
+                          @Value("${ships.feed.subscriberBuffer:256}") int subscriberBuffer,
+                          @Value("${ships.feed.senderThreads:2}") int senderThreads,
+                          @Value("${ships.feed.timeoutMillis:300000}") long timeoutMillis,
+                          @Value("${ships.feed.sendTimeoutMillis:10000}") long sendTimeoutMillis) {
+        this.shipRepository = shipRepository;
+        // a transaction that is not read-only is routed to the primary, which has every committed change
+        this.primaryRead = new TransactionTemplate(transactionManager);
+        this.primaryRead.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.history = new Event[historySize];
+        this.subscriberBuffer = subscriberBuffer;
+        this.timeoutMillis = timeoutMillis;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        AtomicInteger senderCount = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> daemon(runnable, "ship-change-feed-" + senderCount.incrementAndGet()));
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "ship-change-feed-watchdog"));
+        long checkMillis = Math.max(1, sendTimeoutMillis / 4);
+        this.watchdog.scheduleWithFixedDelay(this::abandonStalledSends, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Publishes a created or updated ship; inside a transaction its row is re-read after commit.
+     */
+    public void shipSaved(ShipChange.Type type, Ship ship) {
+        shipChanged(ship.getId(), type);
+    }
+
+    /**
+     * Publishes a deleted ship; inside a transaction this is deferred until after commit.
+     */
+    public void shipDeleted(Long id) {
+        shipChanged(id, ShipChange.Type.DELETE);
+    }
+
+    /**
+     * @param lastEventId id of the last change the client has seen, or null to receive only
+     *                    changes published from now on
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        return subscribe(new SseEmitter(timeoutMillis), lastEventId);
+    }
+
+    /**
+     * Streams changes to the given emitter; see {@link #subscribe(String)}.
+     */
+    public SseEmitter subscribe(SseEmitter emitter, String lastEventId) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        synchronized (this) {
+            if (lastEventId != null) {
+                Long seen = parseSequence(lastEventId);
+                if (seen == null || seen > lastSequence)
+                    subscriber.queue.offer(new Event(epoch, lastSequence, null, null, null));
+                else if (seen < lastSequence)
+                    replay(subscriber, seen);
+            }
+            subscribers.add(subscriber);
+        }
+        schedule(subscriber);
+        return emitter;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return the prefix of the event ids sent by this run of the application
+     */
+    public String getEpoch() {
+        return epoch;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void destroy() {
+        watchdog.shutdownNow();
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers)
+            subscriber.emitter.complete();
+    }
+
+    /**
+     * @return the sequence of an event id of this epoch, or null for any other id
+     */
+    private Long parseSequence(String eventId) {
+        int separator = eventId.lastIndexOf('-');
+        if (separator < 0 || !eventId.substring(0, separator).equals(epoch))
+            return null;
+        try {
+            long sequence = Long.parseLong(eventId.substring(separator + 1));
+            return sequence >= 0 ? sequence : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void replay(Subscriber subscriber, long seen) {
+        long oldest = Math.max(1, lastSequence - history.length + 1);
+        if (seen < oldest - 1 || lastSequence - seen > subscriberBuffer) {
+            subscriber.queue.offer(new Event(epoch, lastSequence, null, null, null));
+            return;
+        }
+        for (long sequence = seen + 1; sequence <= lastSequence; sequence++)
+            subscriber.queue.offer(history[(int) (sequence % history.length)]);
+    }
+
+    private void shipChanged(Long id, ShipChange.Type type) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(Collections.singletonMap(id, type));
+            return;
+        }
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof ChangedShips && ((ChangedShips) synchronization).owner == this) {
+                ((ChangedShips) synchronization).changes.putIfAbsent(id, type);
+                return;
+            }
+        }
+        ChangedShips changed = new ChangedShips(this);
+        changed.changes.put(id, type);
+        TransactionSynchronizationManager.registerSynchronization(changed);
+    }
+
+    /**
+     * Publishes the given ships with their committed rows, in the order they were first changed.
+     * A deleted ship is not re-read, since its id is never handed out again.
+     */
+    private void publish(Map<Long, ShipChange.Type> changes) {
+        Set<Long> saved = new HashSet<>();
+        for (Map.Entry<Long, ShipChange.Type> change : changes.entrySet())
+            if (change.getValue() != ShipChange.Type.DELETE)
+                saved.add(change.getKey());
+
+        synchronized (publishLock) {
+            Map<Long, ShipRecord> rows = new HashMap<>();
+            if (!saved.isEmpty())
+                for (ShipRecord record : primaryRead.execute(status -> shipRepository.findRecordsByIdIn(saved)))
+                    rows.put(record.getId(), record);
+
+            for (Map.Entry<Long, ShipChange.Type> change : changes.entrySet()) {
+                ShipRecord row = rows.get(change.getKey());
+                publish(row == null ? ShipChange.Type.DELETE : change.getValue(), change.getKey(), row);
+            }
+        }
+    }
+
+    private void publish(ShipChange.Type type, Long id, ShipRecord ship) {
+        List<Subscriber> notified;
+        synchronized (this) {
+            Event event = new Event(epoch, ++lastSequence, type, id, ship);
+            history[(int) (event.sequence % history.length)] = event;
+            notified = new ArrayList<>(subscribers);
+            for (Subscriber subscriber : notified) {
+                if (!subscriber.queue.offer(event)) {
+                    subscribers.remove(subscriber);
+                    subscriber.reset = new Event(epoch, event.sequence, null, null, null);
+                }
+            }
+        }
+        for (Subscriber subscriber : notified)
+            schedule(subscriber);
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.closed && (!subscriber.queue.isEmpty() || subscriber.reset != null)
+                && subscriber.draining.compareAndSet(false, true))
+            senders.execute(() -> drain(subscriber));
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            Event event;
+            while ((event = subscriber.queue.poll()) != null) {
+                if (!send(subscriber, event))
+                    return;
+            }
+            if (subscriber.reset != null) {
+                subscriber.closed = true;
+                if (send(subscriber, subscriber.reset))
+                    subscriber.emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            subscribers.remove(subscriber);
+            subscriber.closed = true;
+            subscriber.emitter.completeWithError(e);
+        } finally {
+            subscriber.draining.set(false);
+        }
+        schedule(subscriber);
+    }
+
+    /**
+     * @return false if the send took so long that the subscriber was disconnected meanwhile
+     */
+    private boolean send(Subscriber subscriber, Event event) throws IOException {
+        subscriber.sendingSince = System.nanoTime();
+        subscriber.sendState.set(SENDING);
+        sending.add(subscriber);
+        try {
+            subscriber.emitter.send(event.toSse());
+        } finally {
+            sending.remove(subscriber);
+            if (!subscriber.sendState.compareAndSet(SENDING, IDLE))
+                resizeSenders(-1);
+        }
+        if (subscriber.sendState.get() == ABANDONED) {
+            subscriber.emitter.completeWithError(new TimeoutException("Sending a change took too long"));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Disconnects subscribers whose send has taken longer than the send timeout, and gives the pool
+     * a thread in place of each one's blocked sender. The emitter is left to the blocked sender,
+     * since it holds the emitter's lock until its write returns.
+     */
+    private void abandonStalledSends() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : sending) {
+            if (now - subscriber.sendingSince > sendTimeoutNanos
+                    && subscriber.sendState.compareAndSet(SENDING, ABANDONED)) {
+                subscribers.remove(subscriber);
+                subscriber.closed = true;
+                resizeSenders(1);
+            }
+        }
+    }
+
+    private synchronized void resizeSenders(int delta) {
+        // the maximum must stay at or above the core size while both change
+        if (delta > 0) {
+            senders.setMaximumPoolSize(senders.getMaximumPoolSize() + delta);
+            senders.setCorePoolSize(senders.getCorePoolSize() + delta);
+        } else {
+            senders.setCorePoolSize(senders.getCorePoolSize() + delta);
+            senders.setMaximumPoolSize(senders.getMaximumPoolSize() + delta);
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static final class ChangedShips extends TransactionSynchronizationAdapter {
+        private final ShipChangeFeed owner;
+        private final Map<Long, ShipChange.Type> changes = new LinkedHashMap<>();
+
+        private ChangedShips(ShipChangeFeed owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void afterCommit() {
+            owner.publish(changes);
+        }
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(subscriberBuffer);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicInteger sendState = new AtomicInteger(IDLE);
+        private volatile long sendingSince;
+        // set when the queue overflowed; sent after the queued events, before disconnecting
+        private volatile Event reset;
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    /**
+     * A change, or a reset marker when {@code type} is null.
+     */
+    private static final class Event {
+        private final String epoch;
+        private final long sequence;
+        private final ShipChange.Type type;
+        private final Long id;
+        private final ShipRecord ship;
+
+        private Event(String epoch, long sequence, ShipChange.Type type, Long id, ShipRecord ship) {
+            this.epoch = epoch;
+            this.sequence = sequence;
+            this.type = type;
+            this.id = id;
+            this.ship = ship;
+        }
+
+        private SseEmitter.SseEventBuilder toSse() {
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("sequence", sequence);
+            if (type == null)
+                return SseEmitter.event().id(epoch + "-" + sequence).name("reset")
+                        .data(data, MediaType.APPLICATION_JSON);
+
+            data.put("type", type);
+            data.put("id", id);
+            data.put("ship", ship);
+            return SseEmitter.event().id(epoch + "-" + sequence).name("ship")
+                    .data(data, MediaType.APPLICATION_JSON);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.space.service;
+
+import com.space.model.ShipChange;
+import com.space.repository.ShipChangeRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the ship change log. The entries of a transaction are inserted just before it commits,
+ * numbered from the single-row {@code ship_change_sequence} table, whose row lock the transaction
+ * then holds until it has committed. Transactions therefore take sequence numbers in commit order:
+ * once an entry is visible, every entry with a lower sequence is too, and a consumer's cursor can
+ * never move past an entry that is still to commit, however long its transaction runs.
+ * <p>
+ * The price is that committers that log changes are serialised on that row. It is locked from the
+ * sequence update through the inserts of the entries to the commit itself, so a shard commits at
+ * most one such transaction per lock hold: with a one-entry transaction, two statement round trips
+ * plus a durable commit. On a primary that flushes its redo log on commit in about a millisecond,
+ * this is a ceiling on the order of a few hundred to a thousand ship writes per second per shard,
+ * whatever the pool size; more committers only queue on the lock. Each shard is its own database
+ * with its own sequence row (see {@link com.space.routing.ShipShards}), so the ceiling grows with
+ * the number of shards, and reads of the log never take the lock.
+ */
+@Component
+public class ShipChangeLog {
+    private final ShipChangeRepository changeRepository;
+
+    @Autowired
+    public ShipChangeLog(ShipChangeRepository changeRepository) {
+        this.changeRepository = changeRepository;
+    }
+
+    /**
+     * Logs a change made in the current transaction; the entry is written when it commits.
+     */
+    public void record(Long shipId, ShipChange.Type type) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+            throw new IllegalStateException("Ship changes must be logged within a transaction");
+
+        pendingEntries().entries.add(new ShipChange(shipId, type, System.currentTimeMillis()));
+    }
+
+    private PendingEntries pendingEntries() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+            if (synchronization instanceof PendingEntries && ((PendingEntries) synchronization).owner == this)
+                return (PendingEntries) synchronization;
+
+        PendingEntries pending = new PendingEntries(this);
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+
+    private void write(List<ShipChange> entries) {
+        if (changeRepository.advanceSequence(entries.size()) != 1)
+            throw new IllegalStateException("ship_change_sequence must hold exactly one row");
+
+        for (int i = 0; i < entries.size(); i++) {
+            ShipChange entry = entries.get(i);
+            changeRepository.insertChange(entry.getShipId(), entry.getType().name(), entry.getChangedAt(),
+                    entries.size() - 1 - i);
+        }
+    }
+
+    /**
+     * Kept as a synchronization rather than a bound resource, so that it is suspended along with
+     * its transaction by a nested REQUIRES_NEW one.
+     */
+    private static final class PendingEntries extends TransactionSynchronizationAdapter {
+        private final ShipChangeLog owner;
+        private final List<ShipChange> entries = new ArrayList<>();
+
+        private PendingEntries(ShipChangeLog owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            owner.write(entries);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.space.service;
+
+import com.space.metrics.MetricsRegistry;
+import com.space.model.Ship;
+import com.space.routing.ShipShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind creation of ships for high-rate clients. Validated ships are queued and a single
+ * writer thread creates them in batches of up to {@code ships.ingest.batchSize}, one transaction
+ * and so one commit per batch and shard, instead of one commit per request. The writer waits up
+ * to {@code ships.ingest.lingerMillis} for a batch to fill once it has a ship.
+ * <p>
+ * The queue holds {@code ships.ingest.queueSize} ships; when it is full, {@link #submit(Ship)}
+ * waits {@code ships.ingest.offerTimeoutMillis} for room and then refuses the ship, which pushes
+ * back on the client instead of buffering without bound. A batch that fails is retried ship by
+ * ship, so one bad ship does not fail the others. On shutdown, intake stops and the writer
+ * flushes what is queued, for at most {@code ships.ingest.shutdownTimeoutMillis}.
+ * <p>
+ * The outcome of each ship is kept under its tracking id for the last
+ * {@code ships.ingest.statusHistory} ships.
+ */
+@Component
+public class ShipIngest implements DisposableBean {
+    public enum State {QUEUED, CREATED, FAILED}
+
+    private static final Logger log = LoggerFactory.getLogger(ShipIngest.class);
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final ShipService shipService;
+    private final ShipShards shipShards;
+    private final BlockingQueue<Pending> queue;
+    private final Map<String, Status> statuses;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long offerTimeoutMillis;
+    private final long shutdownTimeoutMillis;
+    private final Thread writer;
+    private final MetricsRegistry.Counter created;
+    private final MetricsRegistry.Counter failed;
+    private final MetricsRegistry.Counter rejected;
+    private final MetricsRegistry.Counter batches;
+    private volatile boolean closed;
+
+    @Autowired
+    public ShipIngest(ShipService shipService, ShipShards shipShards, MetricsRegistry registry,
+                      @Value("${ships.ingest.queueSize:10000}") int queueSize,
+                      @Value("${ships.ingest.batchSize:500}") int batchSize,
+                      @Value("${ships.ingest.lingerMillis:5}") long lingerMillis,
+                      @Value("${ships.ingest.offerTimeoutMillis:50}") long offerTimeoutMillis,
+                      @Value("${ships.ingest.statusHistory:100000}") int statusHistory,
+                      @Value("${ships.ingest.shutdownTimeoutMillis:30000}") long shutdownTimeoutMillis) {
+        this.shipService = shipService;
+        this.shipShards = shipShards;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.statuses = Collections.synchronizedMap(new LinkedHashMap<String, Status>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Status> eldest) {
+                return size() > statusHistory;
+            }
+        });
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+
+        String help = "Ships submitted for write-behind creation";
+        this.created = registry.counter("cosmoport_ingest_ships_total", help, "outcome", "created");
+        this.failed = registry.counter("cosmoport_ingest_ships_total", help, "outcome", "failed");
+        this.rejected = registry.counter("cosmoport_ingest_ships_total", help, "outcome", "rejected");
+        this.batches = registry.counter("cosmoport_ingest_batches_total", "Write-behind transactions committed");
+        registry.gauge("cosmoport_ingest_queue_depth", "Ships waiting for the write-behind writer", queue::size);
+
+        this.writer = new Thread(this::run, "ship-ingest");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a validated ship for creation.
+     *
+     * @return the tracking id, or null when the queue stayed full or intake has stopped
+     */
+    public String submit(Ship ship) throws InterruptedException {
+        Pending pending = new Pending(UUID.randomUUID().toString(), ship);
+        statuses.put(pending.trackingId, new Status(State.QUEUED, null, null));
+        boolean queued = !closed && queue.offer(pending, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        // a ship queued while intake stopped may have missed the final flush
+        if (queued && closed && queue.remove(pending))
+            queued = false;
+
+        if (!queued) {
+            statuses.remove(pending.trackingId);
+            rejected.increment();
+            return null;
+        }
+        return pending.trackingId;
+    }
+
+    /**
+     * @return the outcome of the ship with the given tracking id, or null if it is unknown
+     */
+    public Status getStatus(String trackingId) {
+        return statuses.get(trackingId);
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        closed = true;
+        writer.join(shutdownTimeoutMillis);
+        if (writer.isAlive() || !queue.isEmpty())
+            log.warn("Write-behind writer stopped with {} ships not created", queue.size());
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Pending first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+
+                batch.add(first);
+                long lingerEnd = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0)
+                        continue;
+                    long remaining = closed ? 0 : lingerEnd - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        Map<Integer, List<Pending>> byShard = batch.stream()
+                .collect(Collectors.groupingBy(pending -> shipShards.shardOf(pending.ship)));
+        for (List<Pending> group : byShard.values()) {
+            try {
+                List<Ship> ships = shipService.createAll(group.stream()
+                        .map(pending -> pending.ship)
+                        .collect(Collectors.toList()));
+                batches.increment();
+                for (int i = 0; i < group.size(); i++)
+                    finish(group.get(i), ships.get(i).getId(), null);
+            } catch (RuntimeException e) {
+                if (group.size() == 1) {
+                    finish(group.get(0), null, e);
+                    continue;
+                }
+                for (Pending pending : group)
+                    writeOne(pending);
+            }
+        }
+    }
+
+    private void writeOne(Pending pending) {
+        // the rolled back batch may have assigned an id that no row carries
+        pending.ship.setId(null);
+        try {
+            Ship ship = shipService.create(pending.ship);
+            batches.increment();
+            finish(pending, ship.getId(), null);
+        } catch (RuntimeException e) {
+            finish(pending, null, e);
+        }
+    }
+
+    private void finish(Pending pending, Long shipId, RuntimeException error) {
+        if (error == null) {
+            created.increment();
+            statuses.put(pending.trackingId, new Status(State.CREATED, shipId, null));
+        } else {
+            failed.increment();
+            statuses.put(pending.trackingId, new Status(State.FAILED, null, error.toString()));
+        }
+    }
+
+    private static final class Pending {
+        private final String trackingId;
+        private final Ship ship;
+
+        private Pending(String trackingId, Ship ship) {
+            this.trackingId = trackingId;
+            this.ship = ship;
+        }
+    }
+
+    public static final class Status {
+        private final State state;
+        private final Long shipId;
+        private final String error;
+
+        private Status(State state, Long shipId, String error) {
+            this.state = state;
+            this.shipId = shipId;
+            this.error = error;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * @return id of the created ship, or null unless {@link State#CREATED}
+         */
+        public Long getShipId() {
+            return shipId;
+        }
+
+        /**
+         * @return why the ship could not be created, or null unless {@link State#FAILED}
+         */
+        public String getError() {
+            return error;
+        }
+    }
+}
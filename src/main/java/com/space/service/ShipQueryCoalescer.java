@@ -0,0 +1,161 @@
+package com.space.service;
+
+import com.space.metrics.ShipMetrics;
+import com.space.model.ShipRecord;
+import com.space.model.ShipFilter;
+import com.space.web.QueryGuard;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight execution of filter queries: concurrent callers with an equal {@link ShipFilter}
+ * and field selection share one in-flight query and its result. A completed result may additionally be reused for
+ * {@code ships.query.resultTtlMillis}; results are never shared across fleet versions, so a
+ * mutation made through {@link ShipService} is always visible to the next query.
+ * <p>
+ * The shared query runs under the {@link QueryGuard} of the caller that started it. A caller
+ * waiting for it keeps its own guard: it stops waiting when that guard is cancelled, by its
+ * deadline or explicitly, and when the query fails because the starting caller's guard was
+ * cancelled, it runs the query again under its own.
+ */
+@Component
+public class ShipQueryCoalescer {
+    private static final int MAX_ENTRIES = 1024;
+
+    private final ConcurrentMap<Object, Entry> entries = new ConcurrentHashMap<>();
+    private final ShipVersions shipVersions;
+    private final ShipMetrics shipMetrics;
+    private final QueryGuard queryGuard;
+    private final long resultTtlMillis;
+
+    @Autowired
+    public ShipQueryCoalescer(ShipVersions shipVersions, ShipMetrics shipMetrics, QueryGuard queryGuard,
+                              @Value("${ships.query.resultTtlMillis:0}") long resultTtlMillis) {
+        this.shipVersions = shipVersions;
+        this.shipMetrics = shipMetrics;
+        this.queryGuard = queryGuard;
+        this.resultTtlMillis = resultTtlMillis;
+    }
+
+    /**
+     * @param key the {@link ShipFilter}, or a list combining it with anything else that shapes
+     *            the result, such as the selected fields
+     */
+    public List<ShipRecord> execute(Object key, Supplier<List<ShipRecord>> query) {
+        long version = shipVersions.getFleetStamp().getVersion();
+        QueryGuard.Guard guard = queryGuard.currentGuard();
+
+        while (true) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.isReusable(version, System.currentTimeMillis())) {
+                shipMetrics.filterShared();
+                try {
+                    return entry.join(guard);
+                } catch (RuntimeException | Error e) {
+                    if (!entry.isCancelledByOther(guard))
+                        throw e;
+                }
+                continue;
+            }
+
+            Entry created = new Entry(version, guard);
+            boolean installed = entry == null
+                    ? entries.putIfAbsent(key, created) == null
+                    : entries.replace(key, entry, created);
+            if (installed)
+                return run(key, created, query);
+        }
+    }
+
+    /**
+     * Whatever the query throws, errors included, is handed to the callers waiting on it, and a
+     * failed entry never stays in the map.
+     */
+    private List<ShipRecord> run(Object key, Entry entry, Supplier<List<ShipRecord>> query) {
+        boolean completed = false;
+        try {
+            List<ShipRecord> result = Collections.unmodifiableList(query.get());
+            entry.complete(result);
+            completed = true;
+            return result;
+        } catch (Throwable e) {
+            entry.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            if (!completed || resultTtlMillis <= 0)
+                entries.remove(key, entry);
+            else if (entries.size() > MAX_ENTRIES)
+                evictExpired();
+        }
+    }
+
+    private void evictExpired() {
+        long version = shipVersions.getFleetStamp().getVersion();
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.future.isDone() && !entry.isReusable(version, now));
+    }
+
+    private final class Entry {
+        private final CompletableFuture<List<ShipRecord>> future = new CompletableFuture<>();
+        private final long version;
+        private final QueryGuard.Guard guard;
+        private volatile long completedAt;
+
+        private Entry(long version, QueryGuard.Guard guard) {
+            this.version = version;
+            this.guard = guard;
+        }
+
+        private void complete(List<ShipRecord> result) {
+            completedAt = System.currentTimeMillis();
+            future.complete(result);
+        }
+
+        private boolean isReusable(long currentVersion, long now) {
+            if (version != currentVersion || future.isCompletedExceptionally())
+                return false;
+            return !future.isDone() || now - completedAt < resultTtlMillis;
+        }
+
+        /**
+         * Waits for the result, or until the waiting caller's guard is cancelled.
+         */
+        private List<ShipRecord> join(QueryGuard.Guard waiting) {
+            if (waiting != null && !future.isDone()) {
+                CompletableFuture<?> cancelled = waiting.whenCancelled().toCompletableFuture();
+                CompletableFuture.anyOf(future, cancelled).exceptionally(e -> null).join();
+                if (!future.isDone())
+                    throw new QueryTimeoutException("Stopped waiting for a shared query",
+                            waiting.newCancelledException());
+            }
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error)
+                    throw (Error) e.getCause();
+                throw e;
+            }
+        }
+
+        /**
+         * @return true if the query failed because the guard of the caller that ran it was cancelled,
+         * while the given caller's guard was not
+         */
+        private boolean isCancelledByOther(QueryGuard.Guard waiting) {
+            return future.isCompletedExceptionally() && guard != null && guard != waiting
+                    && guard.getReason() != null && (waiting == null || waiting.getReason() == null);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.space.service;
+
+import com.space.model.ShipRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches ships by id for batch reads. Every entry remembers the ship's version from
+ * {@link ShipVersions} as it was before the ship was read, so an entry is ignored as soon as the
+ * ship is updated or deleted through {@link ShipService}; no explicit invalidation is needed.
+ * <p>
+ * Holds at most {@code ships.batch.cacheSize} entries, evicting the least recently used one to
+ * make room. An entry is also dropped once it is {@code ships.batch.cacheTtlMillis} old, which
+ * bounds how long a change the versions do not see, such as one made by another instance or
+ * behind the application's back, can be served from the cache.
+ */
+@Component
+public class ShipRecordCache {
+    private final Map<Long, Entry> entries;
+    private final ShipVersions shipVersions;
+    private final long ttlMillis;
+
+    @Autowired
+    public ShipRecordCache(ShipVersions shipVersions, @Value("${ships.batch.cacheSize:10000}") int maxEntries,
+                           @Value("${ships.batch.cacheTtlMillis:60000}") long ttlMillis) {
+        this.shipVersions = shipVersions;
+        this.ttlMillis = ttlMillis;
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * @return the cached ship, or null when it is not cached, has changed since or has expired
+     */
+    public ShipRecord get(Long id) {
+        Entry entry = entries.get(id);
+        if (entry == null)
+            return null;
+        if (entry.version != shipVersions.getShipStamp(id).getVersion()
+                || System.currentTimeMillis() - entry.cachedAt >= ttlMillis) {
+            entries.remove(id, entry);
+            return null;
+        }
+        return entry.record;
+    }
+
+    /**
+     * @param version the ship's version taken before the record was read
+     */
+    public void put(ShipRecord record, long version) {
+        entries.put(record.getId(), new Entry(record, version, System.currentTimeMillis()));
+    }
+
+    private static final class Entry {
+        private final ShipRecord record;
+        private final long version;
+        private final long cachedAt;
+
+        private Entry(ShipRecord record, long version, long cachedAt) {
+            this.record = record;
+            this.version = version;
+            this.cachedAt = cachedAt;
+        }
+    }
+}
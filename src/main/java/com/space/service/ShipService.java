@@ -1,20 +1,103 @@
 package com.space.service;
 
 import com.space.controller.ShipOrder;
+import com.space.model.FleetAggregates;
 import com.space.model.Ship;
+import com.space.model.ShipChange;
+import com.space.model.ShipField;
+import com.space.model.ShipFilter;
+import com.space.model.ShipRecord;
 import com.space.model.ShipType;
+import org.springframework.data.domain.Sort;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface ShipService {
     Ship create(Ship ship);
+
+    /**
+     * Creates the ships in one transaction, so that they share a single commit. On a sharded
+     * fleet they must all belong to the same shard, see {@link com.space.routing.ShipShards#shardOf(Ship)}.
+     */
+    List<Ship> createAll(List<Ship> ships);
     Ship read(Long id);
     List<Ship> readAll();
-    List<Ship> getFilteredShipList(String name, String planet, ShipType shipType, Long after, Long before, Boolean isUsed,
-                                   Double minSpeed, Double maxSpeed, Integer minCrewSize, Integer maxCrewSize,
-                                   Double minRating, Double maxRating);
-    List<Ship> getShipsPerPage(List<Ship> ships, Integer pageNumber, Integer pageSize, ShipOrder shipOrder);
+
+    /**
+     * @return ships in the order of the given ids, with null for ids that do not exist
+     */
+    List<ShipRecord> readBatch(List<Long> ids);
+    List<ShipRecord> getFilteredShipList(ShipFilter filter);
+
+    /**
+     * Selects only the columns needed for the given fields, the filter and the order.
+     *
+     * @param fields attributes the returned records expose
+     * @param order  the order the result will be paged in, or null
+     */
+    List<ShipRecord> getFilteredShipList(ShipFilter filter, Set<ShipField> fields, ShipOrder order);
+    /**
+     * Counts the ships matching the filter by the values of each facet, in one pass over the
+     * filtered records.
+     *
+     * @param facets categorical attributes to count by, see {@link ShipField#FACETS}
+     * @return for every requested facet, the number of matches per value
+     */
+    Map<ShipField, Map<String, Long>> getFacets(ShipFilter filter, Set<ShipField> facets);
+    /**
+     * @param by       {@link ShipField#RATING} or {@link ShipField#SPEED}
+     * @param shipType ship type to rank within, or null
+     * @param planet   planet to rank within, or null
+     * @return the first {@code limit} ships in the given order, read through an index
+     */
+    List<ShipRecord> getLeaderboard(ShipField by, Sort.Direction direction, ShipType shipType, String planet,
+                                    int limit);
+    List<ShipRecord> getShipsPerPage(List<ShipRecord> ships, Integer pageNumber, Integer pageSize, ShipOrder shipOrder);
+    /**
+     * Filters, orders and pages the fleet. Across shards, each shard reads only its first
+     * {@code (pageNumber + 1) * pageSize} matches in that order and the page is cut from their merge;
+     * on a single database, the filtered fleet is shared through the filter coalescer and paged in memory.
+     *
+     * @param fields attributes the returned records expose
+     */
+    List<ShipRecord> getShipsPage(ShipFilter filter, Set<ShipField> fields, ShipOrder order,
+                                  Integer pageNumber, Integer pageSize);
     Ship update(Ship ship, Long id);
     boolean delete(Long id);
+    /**
+     * @return running fleet-wide aggregates when the filter is empty, GROUP BY results otherwise
+     */
+    FleetAggregates getAggregates(ShipFilter filter);
+
+    /**
+     * Reads the change log after the given cursor, in commit order; see {@link ShipChangeLog}.
+     *
+     * Every shard keeps its own log, written with its ships, so consumers keep a cursor per shard.
+     *
+     * @param shard   shard whose log to read, from 0 to {@link #getShardCount()} - 1
+     * @param afterSequence sequence of the last entry the consumer has processed, 0 to start from the beginning
+     */
+    List<ShipChange> getChanges(int shard, long afterSequence, int limit);
+
+    int getShardCount();
+
+    /**
+     * @return the fleet version, or null when the current thread's reads may be served by a replica
+     * still lagging behind it
+     */
+    ShipVersions.Stamp getFleetStamp();
+
+    /**
+     * @return the ship's version, or null when the current thread's reads may be served by a
+     * replica still lagging behind it
+     */
+    ShipVersions.Stamp getShipStamp(Long id);
+
+    /**
+     * @return ids of ships whose stored rating differs from the current {@link RatingFormula}
+     */
+    List<Long> getRatingMismatches();
 
 }
@@ -1,90 +1,326 @@
 package com.space.service;
 
 import com.space.controller.ShipOrder;
+import com.space.metrics.ShipMetrics;
+import com.space.metrics.jfr.ShipMutationEvent;
+import com.space.metrics.jfr.ShipQueryEvent;
+import com.space.model.FleetAggregates;
 import com.space.model.Ship;
+import com.space.model.ShipChange;
+import com.space.model.ShipField;
+import com.space.model.ShipFilter;
+import com.space.model.ShipRecord;
 import com.space.model.ShipType;
+import com.space.repository.ShipChangeRepository;
 import com.space.repository.ShipRepository;
+import com.space.routing.ReadYourWrites;
+import com.space.routing.ReplicaRoutingDataSource;
+import com.space.routing.ShipShards;
+import com.space.tracing.Trace;
+import com.space.tracing.Tracer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.time.ZoneId;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
 public class ShipServiceImpl implements ShipService {
+    private static final int DEFAULT_PAGE_SIZE = 3;
+
     private final ShipRepository shipRepository;
+    private final ShipVersions shipVersions;
+    private final ShipQueryCoalescer queryCoalescer;
+    private final ShipMetrics shipMetrics;
+    private final Tracer tracer;
+    private final RatingFormula ratingFormula;
+    private final ShipRecordCache recordCache;
+    private final FleetStatistics fleetStatistics;
+    private final ShipChangeFeed changeFeed;
+    private final ShipChangeLog changeLog;
+    private final ShipChangeRepository changeRepository;
+    private final ShipShards shipShards;
+    private final boolean replicated;
 
     @Autowired
-    public ShipServiceImpl(ShipRepository shipRepository) {
+    public ShipServiceImpl(ShipRepository shipRepository, ShipVersions shipVersions,
+                           ShipQueryCoalescer queryCoalescer, ShipMetrics shipMetrics, Tracer tracer,
+                           RatingFormula ratingFormula, ShipRecordCache recordCache,
+                           FleetStatistics fleetStatistics, ShipChangeFeed changeFeed,
+                           ShipChangeLog changeLog, ShipChangeRepository changeRepository,
+                           ShipShards shipShards, DataSource dataSource) throws SQLException {
         this.shipRepository = shipRepository;
+        this.shipVersions = shipVersions;
+        this.queryCoalescer = queryCoalescer;
+        this.shipMetrics = shipMetrics;
+        this.tracer = tracer;
+        this.ratingFormula = ratingFormula;
+        this.recordCache = recordCache;
+        this.fleetStatistics = fleetStatistics;
+        this.changeFeed = changeFeed;
+        this.changeLog = changeLog;
+        this.changeRepository = changeRepository;
+        this.shipShards = shipShards;
+        this.replicated = dataSource.isWrapperFor(ReplicaRoutingDataSource.class);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Ship read(Long id) {
         return shipRepository.findById(id).orElse(null);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Ship> readAll() {
         return shipRepository.findAll();
     }
 
+    /**
+     * Reads from the primary: records are cached under the current ship version, which data from
+     * a lagging replica could predate.
+     */
     @Override
-    public List<Ship> getFilteredShipList(String name, String planet, ShipType shipType, Long after, Long before, Boolean isUsed,
-                                          Double minSpeed, Double maxSpeed, Integer minCrewSize, Integer maxCrewSize,
-                                          Double minRating, Double maxRating) {
+    public List<ShipRecord> readBatch(List<Long> ids) {
+        Map<Long, ShipRecord> found = new HashMap<>();
+        Set<Long> misses = new HashSet<>();
+        for (Long id : ids) {
+            ShipRecord cached = recordCache.get(id);
+            if (cached != null)
+                found.put(id, cached);
+            else
+                misses.add(id);
+        }
 
-        return readAll().stream()
-                .filter(o -> name == null || o.getName().contains(name))
-                .filter(o -> planet == null || o.getPlanet().contains(planet))
-                .filter(o -> shipType == null || o.getShipType().equals(shipType))
-                .filter(o -> after == null || o.getProdDate().getTime() >= new Date(after).getTime())
-                .filter(o -> before == null || o.getProdDate().getTime() <= new Date(before).getTime())
-                .filter(o -> isUsed == null || o.isUsed().equals(isUsed))
-                .filter(o -> minSpeed == null || o.getSpeed() >= minSpeed)
-                .filter(o -> maxSpeed == null || o.getSpeed() <= maxSpeed)
-                .filter(o -> minCrewSize == null || o.getCrewSize() >= minCrewSize)
-                .filter(o -> maxCrewSize == null || o.getCrewSize() <= maxCrewSize)
-                .filter(o -> minRating == null || o.getRating() >= minRating)
-                .filter(o -> maxRating == null || o.getRating() <= maxRating)
+        if (!misses.isEmpty()) {
+            Map<Long, Long> versions = new HashMap<>();
+            for (Long id : misses)
+                versions.put(id, shipVersions.getShipStamp(id).getVersion());
+
+            for (ShipRecord record : shipRepository.findRecordsByIdIn(misses)) {
+                found.put(record.getId(), record);
+                recordCache.put(record, versions.get(record.getId()));
+            }
+        }
+
+        return ids.stream()
+                .map(found::get)
                 .collect(Collectors.toList());
     }
 
     @Override
-    public List<Ship> getShipsPerPage(List<Ship> ships, Integer pageNumber, Integer pageSize, ShipOrder shipOrder) {
+    @Transactional(readOnly = true)
+    public List<ShipRecord> getFilteredShipList(ShipFilter filter) {
+        return getFilteredShipList(filter, ShipField.ALL, null);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ShipRecord> getFilteredShipList(ShipFilter filter, Set<ShipField> fields, ShipOrder order) {
+        Set<ShipField> columns = getColumns(filter, fields, order);
+        Object key = fields.equals(ShipField.ALL) ? filter : Arrays.asList(filter, columns, fields);
+        if (ReadYourWrites.isPinned())
+            key = Arrays.asList(ReadYourWrites.class, key);
+
+        ShipQueryEvent event = new ShipQueryEvent();
+        event.begin();
+        event.cacheHit = true;
+
+        shipMetrics.filterRequested(filter);
+        List<ShipRecord> result;
+        try (Trace.Span span = tracer.span("service.getFilteredShipList")) {
+            result = queryCoalescer.execute(key, () -> {
+                List<ShipRecord> ships;
+                if (!fields.equals(ShipField.ALL))
+                    ships = shipRepository.findRecordColumns(columns, fields,
+                            filter.getMinRating(), filter.getMaxRating());
+                else if (filter.getMinRating() == null && filter.getMaxRating() == null)
+                    ships = shipRepository.findAllRecords();
+                else
+                    ships = shipRepository.findRecordsByRatingBetween(
+                            filter.getMinRating() == null ? -Double.MAX_VALUE : filter.getMinRating(),
+                            filter.getMaxRating() == null ? Double.MAX_VALUE : filter.getMaxRating());
+                List<ShipRecord> filtered = filter(ships, filter);
+                shipMetrics.filterExecuted(ships.size(), filtered.size());
+                event.cacheHit = false;
+                event.rowsScanned = ships.size();
+                return filtered;
+            });
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.filterShape = filter.getShape();
+            event.rowsReturned = result.size();
+            event.commit();
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<ShipField, Map<String, Long>> getFacets(ShipFilter filter, Set<ShipField> facets) {
+        Map<ShipField, Map<String, Long>> counts = new EnumMap<>(ShipField.class);
+        if (facets.contains(ShipField.SHIP_TYPE)) {
+            Map<String, Long> types = new LinkedHashMap<>();
+            for (ShipType shipType : ShipType.values())
+                types.put(shipType.name(), 0L);
+            counts.put(ShipField.SHIP_TYPE, types);
+        }
+        if (facets.contains(ShipField.IS_USED)) {
+            Map<String, Long> used = new LinkedHashMap<>();
+            used.put("true", 0L);
+            used.put("false", 0L);
+            counts.put(ShipField.IS_USED, used);
+        }
+        if (facets.contains(ShipField.PLANET))
+            counts.put(ShipField.PLANET, new TreeMap<>());
+
+        try (Trace.Span span = tracer.span("service.getFacets")) {
+            for (ShipRecord ship : getFilteredShipList(filter, facets, null)) {
+                for (Map.Entry<ShipField, Map<String, Long>> facet : counts.entrySet())
+                    facet.getValue().merge(facetValue(ship, facet.getKey()), 1L, Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    private static String facetValue(ShipRecord ship, ShipField facet) {
+        switch (facet) {
+            case SHIP_TYPE:
+                return ship.getShipType().name();
+            case IS_USED:
+                return String.valueOf(ship.isUsed());
+            case PLANET:
+                return ship.getPlanet();
+            default:
+                throw new IllegalArgumentException("Not a facet: " + facet);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ShipRecord> getLeaderboard(ShipField by, Sort.Direction direction, ShipType shipType, String planet,
+                                           int limit) {
+        try (Trace.Span span = tracer.span("service.getLeaderboard")) {
+            return shipRepository.findTop(by, direction, shipType, planet, limit);
+        }
+    }
+
+    @Override
+    public List<ShipRecord> getShipsPerPage(List<ShipRecord> ships, Integer pageNumber, Integer pageSize,
+                                            ShipOrder shipOrder) {
         if (ships == null || ships.isEmpty())
             return ships;
 
         pageNumber = pageNumber == null ? 0 : pageNumber;
-        pageSize = pageSize == null ? 3 : pageSize;
+        pageSize = pageSize == null ? DEFAULT_PAGE_SIZE : pageSize;
 
-        return ships.stream()
-                .sorted(getComparator(shipOrder))
-                .skip(pageNumber * pageSize)
-                .limit(pageSize)
-                .collect(Collectors.toList());
+        try (Trace.Span span = tracer.span("service.getShipsPerPage")) {
+            return ships.stream()
+                    .sorted(getComparator(shipOrder))
+                    .skip(pageNumber * pageSize)
+                    .limit(pageSize)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ShipRecord> getShipsPage(ShipFilter filter, Set<ShipField> fields, ShipOrder order,
+                                         Integer pageNumber, Integer pageSize) {
+        if (!shipShards.isSharded())
+            return getShipsPerPage(getFilteredShipList(filter, fields, order), pageNumber, pageSize, order);
+
+        int number = pageNumber == null ? 0 : pageNumber;
+        int size = pageSize == null ? DEFAULT_PAGE_SIZE : pageSize;
+        if (number < 0 || size < 0)
+            throw new IllegalArgumentException("Page " + number + " of size " + size);
+        if (size == 0)
+            return new ArrayList<>();
+
+        ShipField by = order == null ? ShipField.ID : ShipField.fromFieldName(order.getFieldName());
+        Set<ShipField> columns = EnumSet.copyOf(fields);
+        columns.add(ShipField.ID);
+        columns.add(by);
+        try (Trace.Span span = tracer.span("service.getShipsPage")) {
+            return shipRepository.findPage(filter, columns, fields, by,
+                    (int) Math.min(Integer.MAX_VALUE, (long) number * size), size);
+        }
     }
 
     @Override
+    @Transactional
     public Ship create(Ship ship) {
+        return insert(ship);
+    }
+
+    @Override
+    @Transactional
+    public List<Ship> createAll(List<Ship> ships) {
+        List<Ship> created = new ArrayList<>(ships.size());
+        for (Ship ship : ships)
+            created.add(insert(ship));
+        return created;
+    }
+
+    private Ship insert(Ship ship) {
+        ShipMutationEvent event = new ShipMutationEvent();
+        event.begin();
+
         if (ship.isUsed() == null) {
             ship.setUsed(false);
         }
 
         ship.setSpeed((double) Math.round(ship.getSpeed() * 100) / 100);
-        ship.setRating(calculateRating(ship));
-        return shipRepository.save(ship);
+        long ratingStart = System.nanoTime();
+        ratingFormula.apply(ship);
+        event.ratingNanos = System.nanoTime() - ratingStart;
+        Ship created = shipRepository.save(ship);
+        changeLog.record(created.getId(), ShipChange.Type.CREATE);
+        shipVersions.shipChanged(created.getId());
+        fleetStatistics.shipSaved(created);
+        changeFeed.shipSaved(ShipChange.Type.CREATE, created);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = "CREATE";
+            event.shipId = created.getId();
+            event.changedFields = "name,planet,shipType,prodDate,isUsed,speed,crewSize";
+            event.commit();
+        }
+        return created;
     }
 
     @Override
+    @Transactional
     public Ship update(Ship ship, Long id) {
+        ShipMutationEvent event = new ShipMutationEvent();
+        event.begin();
+
         Ship shipForUpdate = read(id);
         if (shipForUpdate == null)
             return null;
 
+        if (event.isEnabled())
+            event.changedFields = getChangedFields(ship, shipForUpdate);
+
         shipForUpdate.setName(ship.getName() != null ? ship.getName() : shipForUpdate.getName());
         shipForUpdate.setPlanet(ship.getPlanet() != null ? ship.getPlanet() : shipForUpdate.getPlanet());
         shipForUpdate.setShipType(ship.getShipType() != null ? ship.getShipType() : shipForUpdate.getShipType());
@@ -93,49 +329,183 @@ public class ShipServiceImpl implements ShipService {
         shipForUpdate.setSpeed(ship.getSpeed() != null ? ship.getSpeed() : shipForUpdate.getSpeed());
         shipForUpdate.setCrewSize(ship.getCrewSize() != null ? ship.getCrewSize() : shipForUpdate.getCrewSize());
 
-        shipForUpdate.setRating(calculateRating(shipForUpdate));
+        long ratingStart = System.nanoTime();
+        ratingFormula.apply(shipForUpdate);
+        event.ratingNanos = System.nanoTime() - ratingStart;
+
+        Ship updated = shipRepository.save(shipForUpdate);
+        changeLog.record(id, ShipChange.Type.UPDATE);
+        shipVersions.shipChanged(id);
+        fleetStatistics.shipSaved(updated);
+        changeFeed.shipSaved(ShipChange.Type.UPDATE, updated);
 
-        return shipRepository.save(shipForUpdate);
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = "UPDATE";
+            event.shipId = id;
+            event.commit();
+        }
+        return updated;
     }
 
     @Override
+    @Transactional
     public boolean delete(Long id) {
-        if (shipRepository.existsById(id)) {
-            shipRepository.deleteById(id);
-            return true;
+        ShipMutationEvent event = new ShipMutationEvent();
+        event.begin();
+
+        if (shipRepository.deleteShipById(id) == 0)
+            return false;
+        changeLog.record(id, ShipChange.Type.DELETE);
+
+        shipVersions.shipChanged(id);
+        fleetStatistics.shipDeleted(id);
+        changeFeed.shipDeleted(id);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = "DELETE";
+            event.shipId = id;
+            event.commit();
         }
-        return false;
+        return true;
+    }
+
+    @Override
+    public ShipVersions.Stamp getFleetStamp() {
+        return isReadFromReplica() ? null : shipVersions.getFleetStamp();
     }
 
-    private Comparator<Ship> getComparator(ShipOrder shipOrder) {
+    @Override
+    public ShipVersions.Stamp getShipStamp(Long id) {
+        return isReadFromReplica() ? null : shipVersions.getShipStamp(id);
+    }
+
+    /**
+     * @return true if read-only calls of the current thread may be served by a replica, whose data
+     * can predate the versions kept by {@link ShipVersions}
+     */
+    private boolean isReadFromReplica() {
+        return replicated && !ReadYourWrites.isPinned();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ShipChange> getChanges(int shard, long afterSequence, int limit) {
+        return shipShards.onShard(shard, () -> changeRepository.findChanges(afterSequence,
+                PageRequest.of(0, limit)));
+    }
+
+    @Override
+    public int getShardCount() {
+        return shipShards.getCount();
+    }
+
+    /**
+     * Reads from the primary, since the running statistics are loaded from the first read.
+     */
+    @Override
+    public FleetAggregates getAggregates(ShipFilter filter) {
+        return filter.getShape().isEmpty()
+                ? fleetStatistics.getAggregates()
+                : shipRepository.aggregate(filter);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Long> getRatingMismatches() {
+        return readAll().stream()
+                .filter(ship -> !ratingFormula.rate(ship).equals(ship.getRating()))
+                .map(Ship::getId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the requested fields plus the id and every attribute the filter or the order reads;
+     * rating bounds are evaluated by SQL and need no column
+     */
+    private Set<ShipField> getColumns(ShipFilter filter, Set<ShipField> fields, ShipOrder order) {
+        Set<ShipField> columns = EnumSet.copyOf(fields);
+        columns.add(ShipField.ID);
+        if (filter.getName() != null) columns.add(ShipField.NAME);
+        if (filter.getPlanet() != null) columns.add(ShipField.PLANET);
+        if (filter.getShipType() != null) columns.add(ShipField.SHIP_TYPE);
+        if (filter.getAfter() != null || filter.getBefore() != null) columns.add(ShipField.PROD_DATE);
+        if (filter.isUsed() != null) columns.add(ShipField.IS_USED);
+        if (filter.getMinSpeed() != null || filter.getMaxSpeed() != null) columns.add(ShipField.SPEED);
+        if (filter.getMinCrewSize() != null || filter.getMaxCrewSize() != null) columns.add(ShipField.CREW_SIZE);
+        if (order != null) columns.add(ShipField.fromFieldName(order.getFieldName()));
+        return columns;
+    }
+
+    /**
+     * Applies the filter parameters; rating bounds have already been applied by the query.
+     */
+    private List<ShipRecord> filter(List<ShipRecord> ships, ShipFilter filter) {
+        String name = filter.getName();
+        String planet = filter.getPlanet();
+        ShipType shipType = filter.getShipType();
+        Long after = filter.getAfter();
+        Long before = filter.getBefore();
+        Boolean isUsed = filter.isUsed();
+        Double minSpeed = filter.getMinSpeed();
+        Double maxSpeed = filter.getMaxSpeed();
+        Integer minCrewSize = filter.getMinCrewSize();
+        Integer maxCrewSize = filter.getMaxCrewSize();
+
+        return ships.stream()
+                .filter(o -> name == null || o.getName().contains(name))
+                .filter(o -> planet == null || o.getPlanet().contains(planet))
+                .filter(o -> shipType == null || o.getShipType() == shipType)
+                .filter(o -> after == null || o.getProdDate() >= after)
+                .filter(o -> before == null || o.getProdDate() <= before)
+                .filter(o -> isUsed == null || o.isUsed() == isUsed)
+                .filter(o -> minSpeed == null || o.getSpeed() >= minSpeed)
+                .filter(o -> maxSpeed == null || o.getSpeed() <= maxSpeed)
+                .filter(o -> minCrewSize == null || o.getCrewSize() >= minCrewSize)
+                .filter(o -> maxCrewSize == null || o.getCrewSize() <= maxCrewSize)
+                .collect(Collectors.toList());
+    }
+
+    private String getChangedFields(Ship patch, Ship current) {
+        StringBuilder fields = new StringBuilder();
+        appendIfChanged(fields, "name", patch.getName(), current.getName());
+        appendIfChanged(fields, "planet", patch.getPlanet(), current.getPlanet());
+        appendIfChanged(fields, "shipType", patch.getShipType(), current.getShipType());
+        appendIfChanged(fields, "prodDate", patch.getProdDate(), current.getProdDate());
+        appendIfChanged(fields, "isUsed", patch.isUsed(), current.isUsed());
+        appendIfChanged(fields, "speed", patch.getSpeed(), current.getSpeed());
+        appendIfChanged(fields, "crewSize", patch.getCrewSize(), current.getCrewSize());
+        return fields.toString();
+    }
+
+    private void appendIfChanged(StringBuilder fields, String field, Object newValue, Object oldValue) {
+        if (newValue != null && !newValue.equals(oldValue))
+            fields.append(fields.length() == 0 ? "" : ",").append(field);
+    }
+
+    private Comparator<ShipRecord> getComparator(ShipOrder shipOrder) {
         if (shipOrder == null) {
-            return Comparator.comparingLong(Ship::getId);
+            return Comparator.comparingLong(ShipRecord::getId);
         }
 
-        Comparator<Ship> comparator = null;
+        Comparator<ShipRecord> comparator = null;
 
         switch (shipOrder) {
             case ID:
-                comparator = Comparator.comparingLong(Ship::getId);
+                comparator = Comparator.comparingLong(ShipRecord::getId);
                 break;
             case SPEED:
-                comparator = Comparator.comparingDouble(Ship::getSpeed);
+                comparator = Comparator.comparingDouble(ShipRecord::getSpeed);
                 break;
             case DATE:
-                comparator = Comparator.comparing(Ship::getProdDate);
+                comparator = Comparator.comparingLong(ShipRecord::getProdDate);
                 break;
             case RATING:
-                comparator = Comparator.comparingDouble(Ship::getRating);
+                comparator = Comparator.comparingDouble(ShipRecord::getRating);
                 break;
         }
 
         return comparator;
     }
-
-    private Double calculateRating(Ship ship) {
-        double wearFactor = ship.isUsed() ? 0.5 : 1.0;
-        int prodYear = ship.getProdDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate().getYear();
-        double rating = (80 * ship.getSpeed() * wearFactor) / (3019 - prodYear + 1d);
-        return (double) Math.round(rating * 100) / 100;
-    }
 }
@@ -0,0 +1,107 @@
+package com.space.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps a monotonically increasing fleet version and a version per ship so that
+ * GET endpoints can answer conditional requests without querying the database.
+ * Versions are bumped by {@link ShipService} mutations only; changes made to the
+ * ship table behind the application's back are not observed.
+ * <p>
+ * A version describes the primary's data; a lagging replica may still serve the data from before
+ * it, so responses read from a replica must not be stamped with it.
+ * <p>
+ * At most {@code ships.versions.maxShipStamps} ships keep a version of their own. Past that, all
+ * of them are forgotten and every ship without one, including the deleted ones, takes the fleet
+ * version of that moment: a ship's version never goes back, at the price of new ETags for the
+ * unchanged ships.
+ */
+@Component
+public class ShipVersions {
+    private final String epoch = Long.toHexString(System.currentTimeMillis());
+    private final ConcurrentMap<Long, Stamp> shipStamps = new ConcurrentHashMap<>();
+    private final int maxShipStamps;
+
+    private volatile Stamp fleetStamp = new Stamp(0, System.currentTimeMillis());
+    /**
+     * The version of the ships without one of their own.
+     */
+    private volatile Stamp baseline = fleetStamp;
+
+    @Autowired
+    public ShipVersions(@Value("${ships.versions.maxShipStamps:100000}") int maxShipStamps) {
+        this.maxShipStamps = maxShipStamps;
+    }
+
+    public Stamp getFleetStamp() {
+        return fleetStamp;
+    }
+
+    public Stamp getShipStamp(Long id) {
+        // the baseline is read after the map, which bump clears only after moving the baseline
+        Stamp stamp = shipStamps.get(id);
+        return stamp != null ? stamp : baseline;
+    }
+
+    /**
+     * Bumps the versions; inside a transaction this is deferred until after commit, so that a
+     * new version is never paired with data read before the change became visible.
+     */
+    public void shipChanged(Long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump(id);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                bump(id);
+            }
+        });
+    }
+
+    private synchronized void bump(Long id) {
+        Stamp stamp = new Stamp(fleetStamp.version + 1, System.currentTimeMillis());
+        fleetStamp = stamp;
+        if (shipStamps.size() >= maxShipStamps && !shipStamps.containsKey(id)) {
+            baseline = stamp;
+            shipStamps.clear();
+            return;
+        }
+        shipStamps.put(id, stamp);
+    }
+
+    public final class Stamp {
+        private final long version;
+        private final long lastModified;
+
+        private Stamp(long version, long lastModified) {
+            this.version = version;
+            this.lastModified = lastModified;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @param representation the format the body is written in, so that a cached body is
+         *                       never validated for a request that negotiates another format
+         */
+        public String getETag(String representation) {
+            return "\"" + epoch + "-" + version + "-" + representation + "\"";
+        }
+    }
+}
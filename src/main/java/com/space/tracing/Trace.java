@@ -0,0 +1,118 @@
+package com.space.tracing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A sampled request: the root timing plus the spans recorded by the layers it went through.
+ * Offsets and durations are in nanoseconds relative to the start of the trace.
+ */
+public final class Trace {
+    private final String traceId;
+    private final String name;
+    private final long startNanos = System.nanoTime();
+    private final long timestamp = System.currentTimeMillis();
+    private final List<SpanRecord> spans = Collections.synchronizedList(new ArrayList<>());
+    private volatile long durationNanos = -1;
+    private int depth;
+
+    Trace(String traceId, String name) {
+        this.traceId = traceId;
+        this.name = name;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public List<SpanRecord> getSpans() {
+        synchronized (spans) {
+            return new ArrayList<>(spans);
+        }
+    }
+
+    Span openSpan(String spanName) {
+        return new Span(spanName, System.nanoTime(), depth++);
+    }
+
+    void record(String spanName, long startNanos, long durationNanos, int spanDepth) {
+        spans.add(new SpanRecord(spanName, startNanos - this.startNanos, durationNanos, spanDepth));
+    }
+
+    /**
+     * Records a span that has already completed, e.g. a JDBC statement reported after execution.
+     */
+    void recordCompleted(String spanName, long durationNanos) {
+        long end = System.nanoTime();
+        record(spanName, end - durationNanos, durationNanos, depth);
+    }
+
+    void finish() {
+        durationNanos = System.nanoTime() - startNanos;
+    }
+
+    public final class Span implements AutoCloseable {
+        private final String spanName;
+        private final long spanStart;
+        private final int spanDepth;
+        private boolean closed;
+
+        private Span(String spanName, long spanStart, int spanDepth) {
+            this.spanName = spanName;
+            this.spanStart = spanStart;
+            this.spanDepth = spanDepth;
+        }
+
+        @Override
+        public void close() {
+            if (closed)
+                return;
+            closed = true;
+            depth--;
+            record(spanName, spanStart, System.nanoTime() - spanStart, spanDepth);
+        }
+    }
+
+    public static final class SpanRecord {
+        private final String name;
+        private final long offsetNanos;
+        private final long durationNanos;
+        private final int depth;
+
+        private SpanRecord(String name, long offsetNanos, long durationNanos, int depth) {
+            this.name = name;
+            this.offsetNanos = offsetNanos;
+            this.durationNanos = durationNanos;
+            this.depth = depth;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getOffsetNanos() {
+            return offsetNanos;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.space.tracing;
+
+import com.space.metrics.StatementListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lightweight in-process tracer. A trace is bound to the request thread; code in any layer opens
+ * spans with {@code try (Trace.Span span = tracer.span("name")) { ... }}. When the current request
+ * is not sampled, {@link #span(String)} returns null, which try-with-resources skips, so untraced
+ * requests only pay for a ThreadLocal lookup.
+ * <p>
+ * Finished traces slower than {@code ships.tracing.slowThresholdMillis} are kept in a ring buffer
+ * of the last {@code ships.tracing.bufferSize} entries. JDBC statements are recorded as "sql"
+ * spans through the {@link StatementListener} callback, also from the threads of tasks decorated
+ * by this {@link TaskDecorator}.
+ */
+@Component
+public class Tracer implements StatementListener, TaskDecorator {
+    private final ThreadLocal<Trace> current = new ThreadLocal<>();
+    private final AtomicReferenceArray<Trace> slowTraces;
+    private final AtomicLong slowTraceCount = new AtomicLong();
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+
+    public Tracer(@Value("${ships.tracing.sampleRate:0.1}") double sampleRate,
+                  @Value("${ships.tracing.slowThresholdMillis:200}") long slowThresholdMillis,
+                  @Value("${ships.tracing.bufferSize:256}") int bufferSize) {
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.slowTraces = new AtomicReferenceArray<>(bufferSize);
+    }
+
+    /**
+     * Starts a trace on the current thread.
+     *
+     * @param traceId propagated trace id, or null to generate one
+     * @param sampled caller's sampling decision, or null to sample at the configured rate
+     * @return the new trace, or null when the request is not sampled
+     */
+    public Trace start(String traceId, Boolean sampled, String name) {
+        boolean sample = sampled != null ? sampled : ThreadLocalRandom.current().nextDouble() < sampleRate;
+        if (!sample) {
+            current.remove();
+            return null;
+        }
+
+        Trace trace = new Trace(traceId != null ? traceId : newTraceId(), name);
+        current.set(trace);
+        return trace;
+    }
+
+    public Trace.Span span(String name) {
+        Trace trace = current.get();
+        return trace == null ? null : trace.openSpan(name);
+    }
+
+    public Trace currentTrace() {
+        return current.get();
+    }
+
+    /**
+     * Unbinds the current trace from the thread without finishing it, for a request whose work goes
+     * on on another thread.
+     *
+     * @return the trace, or null
+     */
+    public Trace detach() {
+        Trace trace = current.get();
+        current.remove();
+        return trace;
+    }
+
+    /**
+     * Binds a trace detached from another thread to the current one.
+     */
+    public void resume(Trace trace) {
+        current.set(trace);
+    }
+
+    public void finish() {
+        Trace trace = current.get();
+        if (trace == null)
+            return;
+
+        current.remove();
+        trace.finish();
+        if (trace.getDurationNanos() >= slowThresholdNanos)
+            slowTraces.set((int) (slowTraceCount.getAndIncrement() % slowTraces.length()), trace);
+    }
+
+    @Override
+    public void statementExecuted(String sql, long nanos) {
+        Trace trace = current.get();
+        if (trace != null)
+            trace.recordCompleted("sql", nanos);
+    }
+
+    @Override
+    public Runnable decorate(Runnable task) {
+        Trace trace = current.get();
+        if (trace == null)
+            return task;
+
+        return () -> {
+            Trace previous = current.get();
+            current.set(trace);
+            try {
+                task.run();
+            } finally {
+                if (previous == null)
+                    current.remove();
+                else
+                    current.set(previous);
+            }
+        };
+    }
+
+    /**
+     * @return retained slow traces, most recent first
+     */
+    public List<Trace> getSlowTraces() {
+        List<Trace> result = new ArrayList<>();
+        long count = slowTraceCount.get();
+        for (long i = count - 1; i >= 0 && i >= count - slowTraces.length(); i--) {
+            Trace trace = slowTraces.get((int) (i % slowTraces.length()));
+            if (trace != null)
+                result.add(trace);
+        }
+        return result;
+    }
+
+    private static String newTraceId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return String.format("%016x%016x", random.nextLong(), random.nextLong());
+    }
+}
@@ -0,0 +1,104 @@
+package com.space.tracing;
+
+import com.space.web.AsyncHandlers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Starts a trace for every controller request, continuing the caller's trace when a W3C
+ * {@code traceparent} or an {@code X-Trace-Id} header is present. The "controller" span covers
+ * argument binding and the handler method; {@link TracingResponseBodyAdvice} switches to a
+ * "serialize" span just before the message converter writes the body.
+ * <p>
+ * Malformed trace headers are ignored, so an untrusted value is never echoed back and cannot
+ * fail the request.
+ */
+@Component
+public class TracingInterceptor implements AsyncHandlerInterceptor {
+    public static final String TRACE_ID_HEADER = "X-Trace-Id";
+    public static final String TRACEPARENT_HEADER = "traceparent";
+
+    private static final Pattern TRACE_ID = Pattern.compile("[0-9a-f]{32}");
+    private static final Pattern TRACEPARENT = Pattern.compile("[0-9a-f]{2}-([0-9a-f]{32})-[0-9a-f]{16}-([0-9a-f]{2})");
+
+    static final String SPAN_ATTRIBUTE = TracingInterceptor.class.getName() + ".span";
+    private static final String TRACE_ATTRIBUTE = TracingInterceptor.class.getName() + ".trace";
+
+    private final Tracer tracer;
+
+    @Autowired
+    public TracingInterceptor(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            Trace trace = (Trace) request.getAttribute(TRACE_ATTRIBUTE);
+            if (trace != null) {
+                request.removeAttribute(TRACE_ATTRIBUTE);
+                tracer.resume(trace);
+            }
+            return true;
+        }
+        if (!(handler instanceof HandlerMethod))
+            return true;
+
+        String traceId = request.getHeader(TRACE_ID_HEADER);
+        if (traceId != null && !TRACE_ID.matcher(traceId).matches())
+            traceId = null;
+        Boolean sampled = null;
+        String traceparent = request.getHeader(TRACEPARENT_HEADER);
+        Matcher matcher = traceparent == null ? null : TRACEPARENT.matcher(traceparent);
+        if (matcher != null && matcher.matches()) {
+            traceId = matcher.group(1);
+            sampled = (Integer.parseInt(matcher.group(2), 16) & 1) == 1;
+        }
+
+        HandlerMethod handlerMethod = (HandlerMethod) handler;
+        Trace trace = tracer.start(traceId, sampled, request.getMethod() + " "
+                + handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName());
+        if (trace != null) {
+            response.setHeader(TRACE_ID_HEADER, trace.getTraceId());
+            request.setAttribute(SPAN_ATTRIBUTE, tracer.span("controller"));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Trace.Span span = (Trace.Span) request.getAttribute(SPAN_ATTRIBUTE);
+        if (span != null) {
+            span.close();
+            request.removeAttribute(SPAN_ATTRIBUTE);
+        }
+        tracer.finish();
+    }
+
+    /**
+     * Ends the trace when the handler returned an event stream, so that the connection's lifetime
+     * is not taken for the handler's latency. The trace of any other asynchronous handler goes on
+     * with its work, carried over by the {@link Tracer}'s task decorator, and is resumed for its
+     * async dispatch.
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        if (AsyncHandlers.returnsStream(handler)) {
+            afterCompletion(request, response, handler, null);
+            return;
+        }
+
+        Trace trace = tracer.detach();
+        if (trace != null)
+            request.setAttribute(TRACE_ATTRIBUTE, trace);
+    }
+}
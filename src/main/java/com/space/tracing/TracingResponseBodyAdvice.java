@@ -0,0 +1,48 @@
+package com.space.tracing;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Ends the "controller" span and opens a "serialize" span right before the response body is
+ * written; {@link TracingInterceptor} closes it once the request completes.
+ */
+@ControllerAdvice
+public class TracingResponseBodyAdvice implements ResponseBodyAdvice<Object> {
+
+    private final Tracer tracer;
+
+    @Autowired
+    public TracingResponseBodyAdvice(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (tracer.currentTrace() == null || !(request instanceof ServletServerHttpRequest))
+            return body;
+
+        HttpServletRequest servletRequest = ((ServletServerHttpRequest) request).getServletRequest();
+        Trace.Span span = (Trace.Span) servletRequest.getAttribute(TracingInterceptor.SPAN_ATTRIBUTE);
+        if (span != null)
+            span.close();
+        servletRequest.setAttribute(TracingInterceptor.SPAN_ATTRIBUTE, tracer.span("serialize"));
+        return body;
+    }
+}
@@ -0,0 +1,106 @@
+package com.space.web;
+
+import com.space.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for the REST API: reads and mutations go through separate {@link Bulkhead}s,
+ * so that a burst of expensive list requests cannot hold the connections that POST and DELETE
+ * need. A request that does not fit is rejected at once with Retry-After instead of queueing:
+ * 503 when its bulkhead is full, 429 when its endpoint already holds its share of the bulkhead.
+ */
+@Component
+public class AdmissionControlInterceptor implements AsyncHandlerInterceptor {
+    private static final String ADMITTED_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".admitted";
+
+    private final Bulkhead reads;
+    private final Bulkhead writes;
+    private final String retryAfterSeconds;
+    private final MetricsRegistry registry;
+
+    @Autowired
+    public AdmissionControlInterceptor(MetricsRegistry registry,
+                                       @Value("${ships.admission.read.minLimit:4}") int readMinLimit,
+                                       @Value("${ships.admission.read.maxLimit:32}") int readMaxLimit,
+                                       @Value("${ships.admission.write.minLimit:2}") int writeMinLimit,
+                                       @Value("${ships.admission.write.maxLimit:16}") int writeMaxLimit,
+                                       @Value("${ships.admission.latencyTargetMillis:250}") long latencyTargetMillis,
+                                       @Value("${ships.admission.decreaseFactor:0.9}") double decreaseFactor,
+                                       @Value("${ships.admission.endpointShare:0.5}") double endpointShare,
+                                       @Value("${ships.admission.retryAfterSeconds:1}") int retryAfterSeconds) {
+        long targetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis);
+        this.reads = new Bulkhead(readMinLimit, readMaxLimit, targetNanos, decreaseFactor, endpointShare);
+        this.writes = new Bulkhead(writeMinLimit, writeMaxLimit, targetNanos, decreaseFactor, endpointShare);
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+        this.registry = registry;
+
+        registerGauges("read", reads);
+        registerGauges("write", writes);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC || !(handler instanceof HandlerMethod))
+            return true;
+
+        String name = isRead(request) ? "read" : "write";
+        Bulkhead bulkhead = isRead(request) ? reads : writes;
+        Object endpoint = ((HandlerMethod) handler).getMethod();
+        Bulkhead.Admission admission = bulkhead.tryAcquire(endpoint);
+        if (admission == Bulkhead.Admission.ADMITTED) {
+            request.setAttribute(ADMITTED_ATTRIBUTE, System.nanoTime());
+            return true;
+        }
+
+        boolean bulkheadFull = admission == Bulkhead.Admission.BULKHEAD_FULL;
+        registry.counter("cosmoport_admission_rejected_total", "Requests shed by admission control",
+                "bulkhead", name, "reason", bulkheadFull ? "bulkhead" : "endpoint").increment();
+        response.setStatus(bulkheadFull ? HttpStatus.SERVICE_UNAVAILABLE.value() : HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        return false;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(ADMITTED_ATTRIBUTE);
+        if (start == null)
+            return;
+
+        request.removeAttribute(ADMITTED_ATTRIBUTE);
+        (isRead(request) ? reads : writes).release(((HandlerMethod) handler).getMethod(),
+                System.nanoTime() - (Long) start);
+    }
+
+    /**
+     * Releases the permit when the handler returned an event stream: the open connection holds
+     * no database resources. Any other asynchronous handler keeps it until its async dispatch completes.
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        if (AsyncHandlers.returnsStream(handler))
+            afterCompletion(request, response, handler, null);
+    }
+
+    private void registerGauges(String name, Bulkhead bulkhead) {
+        registry.gauge("cosmoport_admission_limit", "Current adaptive concurrency limit",
+                bulkhead::getLimit, "bulkhead", name);
+        registry.gauge("cosmoport_admission_in_flight", "Requests currently admitted",
+                bulkhead::getInFlight, "bulkhead", name);
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        return "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+    }
+}
@@ -0,0 +1,24 @@
+package com.space.web;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+/**
+ * Tells apart the two kinds of asynchronous handlers for the interceptors. An event stream holds
+ * no database resources while its connection stays open, so a request is done with once it has
+ * started; any other asynchronous result, such as a {@link java.util.concurrent.Callable}, is the
+ * request's own work going on on another thread, and the request ends with its async dispatch.
+ */
+public final class AsyncHandlers {
+
+    private AsyncHandlers() {
+    }
+
+    /**
+     * @return true if the handler answers with an event stream
+     */
+    public static boolean returnsStream(Object handler) {
+        return handler instanceof HandlerMethod && ResponseBodyEmitter.class.isAssignableFrom(
+                ((HandlerMethod) handler).getReturnType().getParameterType());
+    }
+}
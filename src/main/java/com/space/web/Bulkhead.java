@@ -0,0 +1,77 @@
+package com.space.web;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A concurrency limit for one class of requests, adapted to the observed latency with AIMD: a
+ * request slower than the target shrinks the limit by {@code decreaseFactor}, every faster one
+ * grows it by {@code 1 / limit}, between {@code minLimit} and {@code maxLimit}. As in TCP, the
+ * limit is cut at most once per round trip: only a request admitted after the last decrease can
+ * cause the next one, so a burst of slow requests counts as one congestion signal. A single endpoint
+ * may hold at most {@code endpointShare} of the current limit, so that one expensive endpoint
+ * cannot starve the others in its bulkhead.
+ */
+final class Bulkhead {
+    enum Admission {ADMITTED, BULKHEAD_FULL, ENDPOINT_FULL}
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetNanos;
+    private final double decreaseFactor;
+    private final double endpointShare;
+    private final Map<Object, Integer> endpointInFlight = new HashMap<>();
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos = System.nanoTime();
+
+    Bulkhead(int minLimit, int maxLimit, long targetNanos, double decreaseFactor, double endpointShare) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetNanos = targetNanos;
+        this.decreaseFactor = decreaseFactor;
+        this.endpointShare = endpointShare;
+        this.limit = maxLimit;
+    }
+
+    synchronized Admission tryAcquire(Object endpoint) {
+        if (inFlight >= (int) limit)
+            return Admission.BULKHEAD_FULL;
+
+        int endpointCount = endpointInFlight.getOrDefault(endpoint, 0);
+        if (endpointCount >= Math.max(1, (int) Math.ceil(limit * endpointShare)))
+            return Admission.ENDPOINT_FULL;
+
+        inFlight++;
+        endpointInFlight.put(endpoint, endpointCount + 1);
+        return Admission.ADMITTED;
+    }
+
+    /**
+     * @param nanos time since the request was admitted
+     */
+    synchronized void release(Object endpoint, long nanos) {
+        inFlight--;
+        int endpointCount = endpointInFlight.get(endpoint) - 1;
+        if (endpointCount == 0)
+            endpointInFlight.remove(endpoint);
+        else
+            endpointInFlight.put(endpoint, endpointCount);
+
+        long now = System.nanoTime();
+        if (nanos <= targetNanos) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        } else if (now - nanos - lastDecreaseNanos >= 0) {
+            limit = Math.max(minLimit, limit * decreaseFactor);
+            lastDecreaseNanos = now;
+        }
+    }
+
+    synchronized double getLimit() {
+        return limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+}
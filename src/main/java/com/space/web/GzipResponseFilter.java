@@ -0,0 +1,110 @@
+package com.space.web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip-compresses REST API responses whose body is at least {@code ships.compression.minResponseSize}
+ * bytes when the client accepts gzip. Static resources are not handled here: they are served
+ * precompressed by the resource chain configured in {@link com.space.config.WebConfig}.
+ * <p>
+ * The body is buffered until the request completes, which for asynchronous requests is at the end
+ * of their last async dispatch. A body of type {@code text/event-stream} is never buffered: it is
+ * written incrementally and may stay open indefinitely.
+ */
+@Component
+public class GzipResponseFilter extends OncePerRequestFilter {
+    private final int minResponseSize;
+
+    public GzipResponseFilter(@Value("${ships.compression.minResponseSize:2048}") int minResponseSize) {
+        this.minResponseSize = minResponseSize;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding == null
+                || !acceptEncoding.contains("gzip")
+                || !request.getRequestURI().startsWith(request.getContextPath() + "/rest/");
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        GzipResponseWrapper wrapper = WebUtils.getNativeResponse(response, GzipResponseWrapper.class);
+        if (wrapper == null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            wrapper = new GzipResponseWrapper(response);
+        }
+        chain.doFilter(request, wrapper);
+        if (isAsyncStarted(request))
+            return;
+
+        HttpServletResponse rawResponse = (HttpServletResponse) wrapper.getResponse();
+        if (wrapper.getContentSize() < minResponseSize || rawResponse.containsHeader(HttpHeaders.CONTENT_ENCODING)) {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(wrapper.getContentSize() / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(wrapper.getContentAsByteArray());
+        }
+        rawResponse.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        rawResponse.setContentLength(compressed.size());
+        compressed.writeTo(rawResponse.getOutputStream());
+    }
+
+    /**
+     * Buffers the body, except for event streams, which are written and flushed straight through.
+     */
+    private static final class GzipResponseWrapper extends ContentCachingResponseWrapper {
+        private GzipResponseWrapper(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            return isStreaming() ? getResponse().getOutputStream() : super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            return isStreaming() ? getResponse().getWriter() : super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (isStreaming())
+                getResponse().flushBuffer();
+            else
+                super.flushBuffer();
+        }
+
+        private boolean isStreaming() {
+            String contentType = getContentType();
+            return contentType != null
+                    && MediaType.TEXT_EVENT_STREAM.isCompatibleWith(MediaType.parseMediaType(contentType));
+        }
+    }
+}
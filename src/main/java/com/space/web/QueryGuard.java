@@ -0,0 +1,270 @@
+package com.space.web;
+
+import com.space.metrics.StatementListener;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of requests whose JDBC statements may be cancelled. A {@link Guard} is bound to the
+ * request thread by {@link QueryTimeoutInterceptor}; every statement the thread executes while it
+ * is open is tracked, and cancelling the guard cancels the statements in flight and fails the ones
+ * that follow, so the database stops working for a request whose answer nobody will read.
+ * <p>
+ * A guard is cancelled when its deadline passes, by a watchdog thread rather than the driver's
+ * second-granular {@link Statement#setQueryTimeout(int)}, or explicitly through
+ * {@link #cancel(long)}. Both surface as {@link SQLTimeoutException} from the statement.
+ * <p>
+ * A statement is tracked just before it is handed to the driver, and a driver ignores a cancel
+ * that arrives before it has started executing. The watchdog therefore repeats the cancel every
+ * {@value #RECANCEL_MILLIS} ms until every tracked statement has returned.
+ * <p>
+ * As a {@link TaskDecorator}, it opens the calling thread's guard on the thread that runs a task,
+ * so that the shards a request reads in parallel, or the work of an asynchronous handler, are
+ * cancelled along with it.
+ */
+@Component
+public class QueryGuard implements StatementListener, TaskDecorator, DisposableBean {
+    public enum Reason {TIMED_OUT, CANCELLED, DISCONNECTED}
+
+    private static final long RECANCEL_MILLIS = 10;
+
+    private final ThreadLocal<Guard> current = new ThreadLocal<>();
+    private final ConcurrentMap<Long, Guard> running = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final ScheduledThreadPoolExecutor watchdog;
+
+    public QueryGuard() {
+        watchdog = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "query-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Opens a guard on the current thread; it must be closed with {@link #close(Guard)}.
+     *
+     * @param timeoutMillis deadline from now, or 0 for none
+     */
+    public Guard open(String name, long timeoutMillis) {
+        Guard guard = new Guard(ids.incrementAndGet(), name, timeoutMillis);
+        current.set(guard);
+        running.put(guard.id, guard);
+        if (timeoutMillis > 0)
+            guard.deadline = watchdog.schedule(() -> cancel(guard, Reason.TIMED_OUT), timeoutMillis,
+                    TimeUnit.MILLISECONDS);
+        return guard;
+    }
+
+    public void close(Guard guard) {
+        if (current.get() == guard)
+            current.remove();
+        running.remove(guard.id);
+        if (guard.deadline != null)
+            guard.deadline.cancel(false);
+    }
+
+    /**
+     * Unbinds the guard from the current thread but leaves it open, for a request whose work goes on
+     * on another thread; it is still closed with {@link #close(Guard)}.
+     */
+    public void detach(Guard guard) {
+        if (current.get() == guard)
+            current.remove();
+    }
+
+    /**
+     * @return the guard open on the current thread, or null
+     */
+    public Guard currentGuard() {
+        return current.get();
+    }
+
+    /**
+     * @return false if no such guard is open
+     */
+    public boolean cancel(long id) {
+        Guard guard = running.get(id);
+        if (guard == null)
+            return false;
+        cancel(guard, Reason.CANCELLED);
+        return true;
+    }
+
+    void cancel(Guard guard, Reason reason) {
+        if (guard.markCancelled(reason))
+            cancelStatements(guard);
+    }
+
+    private void cancelStatements(Guard guard) {
+        if (guard.cancelStatements() && !watchdog.isShutdown())
+            watchdog.schedule(() -> cancelStatements(guard), RECANCEL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public List<Guard> getRunning() {
+        List<Guard> guards = new ArrayList<>(running.values());
+        guards.sort((a, b) -> Long.compare(a.id, b.id));
+        return guards;
+    }
+
+    @Override
+    public void statementStarting(Statement statement) throws SQLException {
+        Guard guard = current.get();
+        if (guard != null)
+            guard.start(statement);
+    }
+
+    @Override
+    public void statementFinished(Statement statement) {
+        Guard guard = current.get();
+        if (guard != null)
+            guard.finish(statement);
+    }
+
+    @Override
+    public void statementExecuted(String sql, long nanos) {
+    }
+
+    @Override
+    public Runnable decorate(Runnable task) {
+        Guard guard = current.get();
+        if (guard == null)
+            return task;
+
+        return () -> {
+            Guard previous = current.get();
+            current.set(guard);
+            try {
+                task.run();
+            } finally {
+                if (previous == null)
+                    current.remove();
+                else
+                    current.set(previous);
+            }
+        };
+    }
+
+    @Override
+    public void destroy() {
+        watchdog.shutdownNow();
+    }
+
+    public static final class Guard {
+        private final long id;
+        private final String name;
+        private final long timeoutMillis;
+        private final long startedAt = System.currentTimeMillis();
+        private final Set<Statement> statements = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final CompletableFuture<Reason> cancellation = new CompletableFuture<>();
+        private volatile Reason reason;
+        private volatile ScheduledFuture<?> deadline;
+
+        private Guard(long id, String name, long timeoutMillis) {
+            this.id = id;
+            this.name = name;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        private synchronized void start(Statement statement) throws SQLException {
+            if (reason != null)
+                throw newCancelledException();
+            statements.add(statement);
+        }
+
+        private synchronized void finish(Statement statement) {
+            statements.remove(statement);
+        }
+
+        /**
+         * @return false if the guard was already cancelled
+         */
+        private synchronized boolean markCancelled(Reason reason) {
+            if (this.reason != null)
+                return false;
+            this.reason = reason;
+            cancellation.complete(reason);
+            return true;
+        }
+
+        /**
+         * Cancels the statements in flight, outside the lock, since a driver may do I/O to cancel.
+         *
+         * @return true if statements were in flight, in which case the cancel may have come too early
+         */
+        private boolean cancelStatements() {
+            List<Statement> executing;
+            synchronized (this) {
+                executing = new ArrayList<>(statements);
+            }
+            for (Statement statement : executing) {
+                try {
+                    statement.cancel();
+                } catch (SQLException ignored) {
+                    // the statement has completed or its connection is gone; either way it no longer runs
+                }
+            }
+            return !executing.isEmpty();
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        public long getStartedAt() {
+            return startedAt;
+        }
+
+        public synchronized int getStatementCount() {
+            return statements.size();
+        }
+
+        /**
+         * @return why the guard was cancelled, or null while it is not
+         */
+        public Reason getReason() {
+            return reason;
+        }
+
+        /**
+         * @return the exception a statement of this guard fails with once it is cancelled
+         */
+        public SQLTimeoutException newCancelledException() {
+            return new SQLTimeoutException("Query " + reason.name().toLowerCase().replace('_', ' '), "57014");
+        }
+
+        /**
+         * @return a stage completed with the reason once the guard is cancelled, at its deadline at the latest
+         */
+        public CompletionStage<Reason> whenCancelled() {
+            return cancellation.thenApply(cancelled -> cancelled);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.space.web;
+
+import com.space.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.sql.SQLTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Gives every request a deadline for its database work through {@link QueryGuard}. The deadline is
+ * {@code ships.query.timeoutMillis}, overridden per endpoint by {@code ships.query.endpointTimeoutMillis}
+ * entries such as {@code ShipController.getShipsList:5000}. A client may shorten it to the time it
+ * is willing to wait with the {@value #TIMEOUT_HEADER} header, in milliseconds.
+ * <p>
+ * A blocking request is not told when its client disconnects, so expensive endpoints answer with a
+ * {@link Callable} instead: the guard stays open while it runs, and as the {@link CallableProcessingInterceptor}
+ * registered in {@link com.space.config.WebConfig} this interceptor cancels it when the container
+ * reports an error on the async request, as it does for a client that went away, when the async
+ * request times out, or when it completes before the handler's work has.
+ * <p>
+ * A request whose queries were cancelled is answered with 503.
+ */
+@Component
+public class QueryTimeoutInterceptor implements AsyncHandlerInterceptor, CallableProcessingInterceptor,
+        HandlerExceptionResolver {
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+    private static final String GUARD_ATTRIBUTE = QueryTimeoutInterceptor.class.getName() + ".guard";
+
+    private final QueryGuard queryGuard;
+    private final MetricsRegistry registry;
+    private final long timeoutMillis;
+    private final Map<String, Long> endpointTimeouts = new HashMap<>();
+
+    @Autowired
+    public QueryTimeoutInterceptor(QueryGuard queryGuard, MetricsRegistry registry,
+                                   @Value("${ships.query.timeoutMillis:30000}") long timeoutMillis,
+                                   @Value("${ships.query.endpointTimeoutMillis:}") String[] endpointTimeouts) {
+        this.queryGuard = queryGuard;
+        this.registry = registry;
+        this.timeoutMillis = timeoutMillis;
+        for (String entry : endpointTimeouts) {
+            int separator = entry.lastIndexOf(':');
+            if (separator < 0)
+                throw new IllegalStateException("ships.query.endpointTimeoutMillis entry " + entry
+                        + " is not Controller.method:millis");
+            this.endpointTimeouts.put(entry.substring(0, separator).trim(),
+                    Long.parseLong(entry.substring(separator + 1).trim()));
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC || !(handler instanceof HandlerMethod))
+            return true;
+
+        Method method = ((HandlerMethod) handler).getMethod();
+        String endpoint = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        long timeout = endpointTimeouts.getOrDefault(endpoint, timeoutMillis);
+        Long requested = parseTimeout(request.getHeader(TIMEOUT_HEADER));
+        if (requested != null && (timeout <= 0 || requested < timeout))
+            timeout = requested;
+
+        request.setAttribute(GUARD_ATTRIBUTE, queryGuard.open(request.getMethod() + " " + endpoint, timeout));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object guard = request.getAttribute(GUARD_ATTRIBUTE);
+        if (guard == null)
+            return;
+
+        request.removeAttribute(GUARD_ATTRIBUTE);
+        queryGuard.close((QueryGuard.Guard) guard);
+    }
+
+    /**
+     * Closes the guard of an event stream, which runs no more queries; the guard of any other
+     * asynchronous handler goes on with its work and is closed once its async dispatch completes.
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        if (AsyncHandlers.returnsStream(handler)) {
+            afterCompletion(request, response, handler, null);
+            return;
+        }
+
+        Object guard = request.getAttribute(GUARD_ATTRIBUTE);
+        if (guard != null)
+            queryGuard.detach((QueryGuard.Guard) guard);
+    }
+
+    @Override
+    public <T> Object handleTimeout(NativeWebRequest request, Callable<T> task) {
+        cancel(request, QueryGuard.Reason.TIMED_OUT);
+        return RESULT_NONE;
+    }
+
+    @Override
+    public <T> Object handleError(NativeWebRequest request, Callable<T> task, Throwable t) {
+        cancel(request, QueryGuard.Reason.DISCONNECTED);
+        return RESULT_NONE;
+    }
+
+    /**
+     * The async request completed; a guard still open here belongs to work whose result will not be sent.
+     */
+    @Override
+    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+        Object guard = request.getAttribute(GUARD_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (guard == null)
+            return;
+
+        request.removeAttribute(GUARD_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        queryGuard.cancel((QueryGuard.Guard) guard, QueryGuard.Reason.DISCONNECTED);
+        queryGuard.close((QueryGuard.Guard) guard);
+    }
+
+    /**
+     * Answers 503 when the handler failed because its queries were cancelled, including a query
+     * shared with another request through the filter coalescer.
+     */
+    @Override
+    public ModelAndView resolveException(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                         Exception ex) {
+        QueryGuard.Guard guard = (QueryGuard.Guard) request.getAttribute(GUARD_ATTRIBUTE);
+        QueryGuard.Reason reason = guard == null ? null : guard.getReason();
+        if (reason == null && !causedByTimeout(ex))
+            return null;
+
+        registry.counter("cosmoport_query_cancelled_total", "Requests failed by cancelled queries",
+                "reason", reason == null ? "shared" : reason.name().toLowerCase()).increment();
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        return new ModelAndView();
+    }
+
+    private void cancel(NativeWebRequest request, QueryGuard.Reason reason) {
+        Object guard = request.getAttribute(GUARD_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (guard != null)
+            queryGuard.cancel((QueryGuard.Guard) guard, reason);
+    }
+
+    private static boolean causedByTimeout(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause())
+            if (cause instanceof SQLTimeoutException)
+                return true;
+        return false;
+    }
+
+    private static Long parseTimeout(String header) {
+        if (header == null)
+            return null;
+        try {
+            long millis = Long.parseLong(header.trim());
+            return millis > 0 ? millis : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.space.web;
+
+import com.space.model.Ship;
+import com.space.model.ShipField;
+import com.space.model.ShipRecord;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Write-only converter for {@code application/x-ship}, a fixed-schema binary encoding of ships.
+ * Both {@link Ship} entities and {@link ShipRecord}s are written in the same format.
+ * <p>
+ * A response is a sequence of ships, even for a single ship:
+ * <pre>
+ * byte    format version (1)
+ * int     number of ships
+ * per ship:
+ *   short   presence mask, bit i set when field i is non-null (id, name, planet, shipType,
+ *           prodDate, isUsed, speed, crewSize, rating)
+ *   long    id
+ *   UTF     name, planet        (modified UTF-8, as DataOutput.writeUTF)
+ *   byte    shipType ordinal
+ *   long    prodDate, epoch millis
+ *   boolean isUsed
+ *   double  speed
+ *   int     crewSize
+ *   double  rating
+ * </pre>
+ * Absent fields, including those left out by a {@code fields} selection, take no space.
+ * All numbers are big-endian.
+ */
+public class ShipBinaryHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+    public static final MediaType APPLICATION_SHIP = new MediaType("application", "x-ship");
+
+    private static final byte FORMAT_VERSION = 1;
+
+    public ShipBinaryHttpMessageConverter() {
+        super(APPLICATION_SHIP);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return isShip(clazz) || Collection.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!canWrite(mediaType))
+            return false;
+
+        ResolvableType resolved = type == null ? ResolvableType.forClass(clazz) : ResolvableType.forType(type);
+        if (isShip(resolved.resolve(Object.class)))
+            return true;
+        return resolved.asCollection() != ResolvableType.NONE
+                && isShip(resolved.asCollection().getGeneric(0).resolve(Object.class));
+    }
+
+    private static boolean isShip(Class<?> clazz) {
+        return Ship.class.isAssignableFrom(clazz) || ShipRecord.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("application/x-ship is a response-only format", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("application/x-ship is a response-only format", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage) throws IOException {
+        Collection<?> ships = body instanceof Collection ? (Collection<?>) body : Collections.singletonList(body);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputMessage.getBody()));
+        out.writeByte(FORMAT_VERSION);
+        out.writeInt(ships.size());
+        for (Object ship : ships) {
+            if (ship instanceof ShipRecord)
+                writeShip((ShipRecord) ship, out);
+            else
+                writeShip((Ship) ship, out);
+        }
+        out.flush();
+    }
+
+    private void writeShip(ShipRecord ship, DataOutputStream out) throws IOException {
+        boolean hasName = ship.has(ShipField.NAME) && ship.getName() != null;
+        boolean hasPlanet = ship.has(ShipField.PLANET) && ship.getPlanet() != null;
+        boolean hasShipType = ship.has(ShipField.SHIP_TYPE) && ship.getShipType() != null;
+        int mask = 0;
+        for (ShipField field : ship.getFields())
+            mask |= 1 << field.ordinal();
+        if (!hasName) mask &= ~(1 << ShipField.NAME.ordinal());
+        if (!hasPlanet) mask &= ~(1 << ShipField.PLANET.ordinal());
+        if (!hasShipType) mask &= ~(1 << ShipField.SHIP_TYPE.ordinal());
+        out.writeShort(mask);
+
+        if (ship.has(ShipField.ID)) out.writeLong(ship.getId());
+        if (hasName) out.writeUTF(ship.getName());
+        if (hasPlanet) out.writeUTF(ship.getPlanet());
+        if (hasShipType) out.writeByte(ship.getShipType().ordinal());
+        if (ship.has(ShipField.PROD_DATE)) out.writeLong(ship.getProdDate());
+        if (ship.has(ShipField.IS_USED)) out.writeBoolean(ship.isUsed());
+        if (ship.has(ShipField.SPEED)) out.writeDouble(ship.getSpeed());
+        if (ship.has(ShipField.CREW_SIZE)) out.writeInt(ship.getCrewSize());
+        if (ship.has(ShipField.RATING)) out.writeDouble(ship.getRating());
+    }
+
+    private void writeShip(Ship ship, DataOutputStream out) throws IOException {
+        Object[] fields = {ship.getId(), ship.getName(), ship.getPlanet(), ship.getShipType(), ship.getProdDate(),
+                ship.isUsed(), ship.getSpeed(), ship.getCrewSize(), ship.getRating()};
+        int mask = 0;
+        for (int i = 0; i < fields.length; i++)
+            if (fields[i] != null)
+                mask |= 1 << i;
+        out.writeShort(mask);
+
+        if (ship.getId() != null) out.writeLong(ship.getId());
+        if (ship.getName() != null) out.writeUTF(ship.getName());
+        if (ship.getPlanet() != null) out.writeUTF(ship.getPlanet());
+        if (ship.getShipType() != null) out.writeByte(ship.getShipType().ordinal());
+        if (ship.getProdDate() != null) out.writeLong(ship.getProdDate().getTime());
+        if (ship.isUsed() != null) out.writeBoolean(ship.isUsed());
+        if (ship.getSpeed() != null) out.writeDouble(ship.getSpeed());
+        if (ship.getCrewSize() != null) out.writeInt(ship.getCrewSize());
+        if (ship.getRating() != null) out.writeDouble(ship.getRating());
+    }
+}
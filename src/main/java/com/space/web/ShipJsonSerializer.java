@@ -0,0 +1,56 @@
+package com.space.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.space.model.Ship;
+
+import java.io.IOException;
+
+/**
+ * Hand-written serializer for {@link Ship}, replacing the reflective field-based bean serializer
+ * on the hot list path. Produces exactly the same properties, in the same order, as the field
+ * visibility configured in {@link com.space.config.WebConfig}; works for every Jackson backend
+ * (JSON, Smile, CBOR).
+ */
+public class ShipJsonSerializer extends StdSerializer<Ship> {
+
+    public ShipJsonSerializer() {
+        super(Ship.class);
+    }
+
+    @Override
+    public void serialize(Ship ship, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(ship);
+
+        gen.writeFieldName("id");
+        if (ship.getId() == null) gen.writeNull();
+        else gen.writeNumber(ship.getId());
+
+        gen.writeStringField("name", ship.getName());
+        gen.writeStringField("planet", ship.getPlanet());
+        gen.writeStringField("shipType", ship.getShipType() == null ? null : ship.getShipType().name());
+
+        gen.writeFieldName("prodDate");
+        if (ship.getProdDate() == null) gen.writeNull();
+        else provider.defaultSerializeDateValue(ship.getProdDate(), gen);
+
+        gen.writeFieldName("isUsed");
+        if (ship.isUsed() == null) gen.writeNull();
+        else gen.writeBoolean(ship.isUsed());
+
+        gen.writeFieldName("speed");
+        if (ship.getSpeed() == null) gen.writeNull();
+        else gen.writeNumber(ship.getSpeed());
+
+        gen.writeFieldName("crewSize");
+        if (ship.getCrewSize() == null) gen.writeNull();
+        else gen.writeNumber(ship.getCrewSize());
+
+        gen.writeFieldName("rating");
+        if (ship.getRating() == null) gen.writeNull();
+        else gen.writeNumber(ship.getRating());
+
+        gen.writeEndObject();
+    }
+}
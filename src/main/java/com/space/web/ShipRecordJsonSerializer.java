@@ -0,0 +1,58 @@
+package com.space.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.space.model.ShipField;
+import com.space.model.ShipRecord;
+
+import java.io.IOException;
+
+/**
+ * Serializer for {@link ShipRecord}, producing the same document as {@link ShipJsonSerializer}
+ * does for the entity, so list responses do not change shape. Records from a projection are
+ * written with their selected fields only.
+ */
+public class ShipRecordJsonSerializer extends StdSerializer<ShipRecord> {
+
+    public ShipRecordJsonSerializer() {
+        super(ShipRecord.class);
+    }
+
+    @Override
+    public void serialize(ShipRecord ship, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(ship);
+        if (ship.getFields() == ShipField.ALL) {
+            gen.writeNumberField("id", ship.getId());
+            gen.writeStringField("name", ship.getName());
+            gen.writeStringField("planet", ship.getPlanet());
+            gen.writeStringField("shipType", ship.getShipType() == null ? null : ship.getShipType().name());
+            gen.writeFieldName("prodDate");
+            provider.defaultSerializeDateValue(ship.getProdDate(), gen);
+            gen.writeBooleanField("isUsed", ship.isUsed());
+            gen.writeNumberField("speed", ship.getSpeed());
+            gen.writeNumberField("crewSize", ship.getCrewSize());
+            gen.writeNumberField("rating", ship.getRating());
+        } else {
+            for (ShipField field : ship.getFields())
+                writeField(ship, field, gen, provider);
+        }
+        gen.writeEndObject();
+    }
+
+    private void writeField(ShipRecord ship, ShipField field, JsonGenerator gen, SerializerProvider provider)
+            throws IOException {
+        gen.writeFieldName(field.getFieldName());
+        switch (field) {
+            case ID: gen.writeNumber(ship.getId()); break;
+            case NAME: gen.writeString(ship.getName()); break;
+            case PLANET: gen.writeString(ship.getPlanet()); break;
+            case SHIP_TYPE: gen.writeString(ship.getShipType() == null ? null : ship.getShipType().name()); break;
+            case PROD_DATE: provider.defaultSerializeDateValue(ship.getProdDate(), gen); break;
+            case IS_USED: gen.writeBoolean(ship.isUsed()); break;
+            case SPEED: gen.writeNumber(ship.getSpeed()); break;
+            case CREW_SIZE: gen.writeNumber(ship.getCrewSize()); break;
+            case RATING: gen.writeNumber(ship.getRating()); break;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.space.controller;
+
+import com.space.controller.utils.TestsHelper;
+import com.space.web.AdmissionControlInterceptor;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@TestPropertySource(properties = {"ships.admission.read.minLimit=4", "ships.admission.read.maxLimit=4",
+        "ships.admission.endpointShare=0.5", "ships.admission.latencyTargetMillis=200",
+        "ships.admission.decreaseFactor=0.5"})
+public class AdmissionControlTest extends AbstractTest {
+
+    //test1
+    @Test
+    public void endpointShareTest() throws Exception {
+        List<MockHttpServletRequest> held = hold("GET", "/rest/ships", 2);
+        try {
+            mockMvc.perform(get("/rest/ships"))
+                    .andExpect(status().isTooManyRequests())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+            mockMvc.perform(get("/rest/ships/count"))
+                    .andExpect(status().isOk());
+        } finally {
+            release(held);
+        }
+        mockMvc.perform(get("/rest/ships"))
+                .andExpect(status().isOk());
+    }
+
+    //test2
+    @Test
+    public void readBulkheadDoesNotBlockWritesTest() throws Exception {
+        List<MockHttpServletRequest> held = hold("GET", "/rest/ships", 2);
+        held.addAll(hold("GET", "/rest/ships/count", 2));
+        try {
+            mockMvc.perform(get("/rest/ships/1"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+            mockMvc.perform(post("/rest/ships/")
+                    .contentType(MediaType.APPLICATION_JSON_UTF8)
+                    .content(TestsHelper.NORMAL_JSON))
+                    .andExpect(status().isOk());
+        } finally {
+            release(held);
+        }
+    }
+
+    //test3
+    @Test
+    public void burstOfSlowRequestsDecreasesLimitOnceTest() throws Exception {
+        double before = getWriteLimit();
+        List<MockHttpServletRequest> held = hold("POST", "/rest/ships", 4);
+        Thread.sleep(300);
+        release(held);
+
+        assertEquals("Предел уменьшен больше одного раза за окно", Math.max(1, before * 0.5), getWriteLimit(), 0.01);
+    }
+
+    private double getWriteLimit() throws Exception {
+        String metrics = mockMvc.perform(get("/admin/metrics"))
+                .andReturn().getResponse().getContentAsString();
+        Matcher matcher = Pattern.compile("cosmoport_admission_limit\\{bulkhead=\"write\"} (\\S+)").matcher(metrics);
+        assertTrue("Нет метрики предела записи", matcher.find());
+        return Double.parseDouble(matcher.group(1));
+    }
+
+    /**
+     * Admits requests to the given endpoint without completing them, as slow requests would.
+     */
+    private List<MockHttpServletRequest> hold(String method, String uri, int count) throws Exception {
+        AdmissionControlInterceptor interceptor = context.getBean(AdmissionControlInterceptor.class);
+        List<MockHttpServletRequest> held = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+            assertTrue(interceptor.preHandle(request, new MockHttpServletResponse(), handler(request)));
+            held.add(request);
+        }
+        return held;
+    }
+
+    private void release(List<MockHttpServletRequest> held) throws Exception {
+        AdmissionControlInterceptor interceptor = context.getBean(AdmissionControlInterceptor.class);
+        for (MockHttpServletRequest request : held)
+            interceptor.afterCompletion(request, new MockHttpServletResponse(), handler(request), null);
+    }
+
+    private Object handler(MockHttpServletRequest request) throws Exception {
+        return context.getBean(RequestMappingHandlerMapping.class).getHandler(request).getHandler();
+    }
+}
@@ -0,0 +1,32 @@
+package com.space.controller;
+
+import com.space.web.AsyncHandlers;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+
+/**
+ * MockMvc that finishes a request answered by a {@link java.util.concurrent.Callable} with its
+ * async dispatch, as the servlet container does, so that tests see the final response. Event
+ * streams are left open for the test to read.
+ */
+class AsyncMockMvc {
+    private final MockMvc mockMvc;
+
+    AsyncMockMvc(MockMvc mockMvc) {
+        this.mockMvc = mockMvc;
+    }
+
+    ResultActions perform(RequestBuilder requestBuilder) throws Exception {
+        ResultActions actions = mockMvc.perform(requestBuilder);
+        MvcResult result = actions.andReturn();
+        if (!result.getRequest().isAsyncStarted() || AsyncHandlers.returnsStream(result.getHandler()))
+            return actions;
+
+        result.getAsyncResult();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+}
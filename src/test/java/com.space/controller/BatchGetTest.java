@@ -0,0 +1,126 @@
+package com.space.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.space.controller.utils.TestsHelper;
+import com.space.model.ShipRecord;
+import com.space.model.ShipType;
+import com.space.service.ShipRecordCache;
+import com.space.service.ShipVersions;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class BatchGetTest extends AbstractTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    //test1
+    @Test
+    public void getShipsBatchKeepsRequestOrderTest() throws Exception {
+        JsonNode ships = getBatch("/rest/ships/batch?ids=12,999,3,12");
+
+        assertEquals(4, ships.size());
+        assertEquals("Hunter IV", ships.get(0).get("name").asText());
+        assertEquals(999, ships.get(1).get("id").asLong());
+        assertTrue("Для несуществующего id нет отметки notFound.", ships.get(1).get("notFound").asBoolean());
+        assertEquals("Eagle Transporter", ships.get(2).get("name").asText());
+        assertEquals("Hunter IV", ships.get(3).get("name").asText());
+    }
+
+    //test2
+    @Test
+    public void getShipsBatchAfterUpdateTest() throws Exception {
+        getBatch("/rest/ships/batch?ids=17");
+
+        mockMvc.perform(post("/rest/ships/17")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(String.format(TestsHelper.JSON_SKELETON, "Updated", true, 0.5, 10)))
+                .andExpect(status().isOk());
+
+        assertEquals("Пакетный запрос вернул устаревшие данные после обновления корабля.",
+                "Updated", getBatch("/rest/ships/batch?ids=17").get(0).get("name").asText());
+    }
+
+    //test3
+    @Test
+    public void getShipsBatchInvalidIdsTest() throws Exception {
+        mockMvc.perform(get("/rest/ships/batch?ids=1,0")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isBadRequest());
+
+        StringBuilder ids = new StringBuilder("1");
+        for (int i = 2; i <= 101; i++)
+            ids.append(',').append(i);
+        mockMvc.perform(get("/rest/ships/batch?ids=" + ids)
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isBadRequest());
+    }
+
+    //test4
+    @Test
+    public void cacheEvictsLeastRecentlyUsedTest() {
+        ShipRecordCache cache = new ShipRecordCache(new ShipVersions(100), 2, 60000);
+        cache.put(record(1L), 0);
+        cache.put(record(2L), 0);
+        assertNotNull(cache.get(1L));
+        cache.put(record(3L), 0);
+
+        assertNotNull("Недавно прочитанный корабль вытеснен из кэша.", cache.get(1L));
+        assertNull("Давно не читавшийся корабль остался в кэше.", cache.get(2L));
+        assertNotNull("Переполнение кэша не должно очищать его целиком.", cache.get(3L));
+    }
+
+    //test5
+    @Test
+    public void cacheEntriesExpireTest() throws Exception {
+        ShipRecordCache cache = new ShipRecordCache(new ShipVersions(100), 10, 50);
+        cache.put(record(1L), 0);
+        assertNotNull(cache.get(1L));
+
+        Thread.sleep(60);
+        assertNull("Устаревшая запись кэша не удалена.", cache.get(1L));
+    }
+
+    //test6
+    @Test
+    public void shipVersionsAreBoundedTest() {
+        ShipVersions versions = new ShipVersions(2);
+        ShipRecordCache cache = new ShipRecordCache(versions, 10, 60000);
+        cache.put(record(3L), versions.getShipStamp(3L).getVersion());
+        versions.shipChanged(1L);
+        versions.shipChanged(2L);
+        assertEquals(1, versions.getShipStamp(1L).getVersion());
+        assertEquals(0, versions.getShipStamp(3L).getVersion());
+
+        versions.shipChanged(4L);
+        for (long id = 1; id <= 5; id++)
+            assertEquals("Версия корабля " + id + " не равна версии флота после переполнения.",
+                    versions.getFleetStamp().getVersion(), versions.getShipStamp(id).getVersion());
+        assertNull("Запись кэша пережила сброс версий.", cache.get(3L));
+
+        versions.shipChanged(5L);
+        assertEquals(4, versions.getShipStamp(5L).getVersion());
+        assertEquals(3, versions.getShipStamp(1L).getVersion());
+    }
+
+    private static ShipRecord record(Long id) {
+        return new ShipRecord(id, "Ship " + id, "Mars", ShipType.MERCHANT, new Date(), false, 0.5, 10, 1.0);
+    }
+
+    private JsonNode getBatch(String url) throws Exception {
+        return mapper.readTree(mockMvc.perform(get(url)
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+}
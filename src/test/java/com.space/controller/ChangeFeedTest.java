@@ -0,0 +1,276 @@
+package com.space.controller;
+
+import com.space.controller.utils.TestsHelper;
+import com.space.model.Ship;
+import com.space.service.ShipChangeFeed;
+import com.space.service.ShipService;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@TestPropertySource(properties = {
+        "ships.feed.sendTimeoutMillis=1000",
+        "ships.feed.subscriberBuffer=" + ChangeFeedTest.SUBSCRIBER_BUFFER
+})
+public class ChangeFeedTest extends AbstractTest {
+    static final int SUBSCRIBER_BUFFER = 4;
+
+    //test1
+    @Test
+    public void liveChangesTest() throws Exception {
+        MvcResult subscription = subscribe(null);
+
+        mockMvc.perform(post("/rest/ships/")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(TestsHelper.NORMAL_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/rest/ships/7"))
+                .andExpect(status().isOk());
+
+        String events = awaitContent(subscription, "\"type\":\"DELETE\"");
+        assertTrue("Подписчик не получил событие создания корабля.", events.contains("\"type\":\"CREATE\""));
+        assertTrue("Событие удаления должно содержать id корабля.", events.contains("\"id\":7"));
+    }
+
+    //test2
+    @Test
+    public void resumeFromLastEventIdTest() throws Exception {
+        ShipChangeFeed changeFeed = context.getBean(ShipChangeFeed.class);
+        mockMvc.perform(delete("/rest/ships/8"))
+                .andExpect(status().isOk());
+        long seen = changeFeed.getLastSequence();
+        mockMvc.perform(delete("/rest/ships/9"))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/rest/ships/10"))
+                .andExpect(status().isOk());
+
+        String epoch = changeFeed.getEpoch();
+        MvcResult subscription = subscribe(epoch + "-" + seen);
+
+        String events = awaitContent(subscription, "id:" + epoch + "-" + (seen + 2));
+        assertTrue("Пропущенные события не были отправлены после переподключения.",
+                events.contains("id:" + epoch + "-" + (seen + 1)));
+        assertTrue("Уже полученные события не должны отправляться повторно.",
+                !events.contains("id:" + epoch + "-" + seen + "\n"));
+    }
+
+    //test3
+    @Test
+    public void resetAfterRestartTest() throws Exception {
+        mockMvc.perform(delete("/rest/ships/8"))
+                .andExpect(status().isOk());
+
+        // an id from an earlier run whose sequence is ahead of this run's
+        awaitContent(subscribe("1-1000000"), "event:reset");
+        awaitContent(subscribe("garbage"), "event:reset");
+    }
+
+    //test4
+    @Test
+    public void stalledSubscribersDoNotBlockOthersTest() throws Exception {
+        ShipChangeFeed changeFeed = context.getBean(ShipChangeFeed.class);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            int before = changeFeed.getSubscriberCount();
+            // as many stalled connections as there are sender threads
+            changeFeed.subscribe(new StalledEmitter(release), null);
+            changeFeed.subscribe(new StalledEmitter(release), null);
+            MvcResult subscription = subscribe(null);
+
+            mockMvc.perform(delete("/rest/ships/11"))
+                    .andExpect(status().isOk());
+            mockMvc.perform(delete("/rest/ships/12"))
+                    .andExpect(status().isOk());
+
+            awaitContent(subscription, "\"id\":12");
+            assertEquals("Зависшие подписчики должны быть отключены.", before + 1, changeFeed.getSubscriberCount());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    //test5
+    @Test
+    public void lateCommitCallbackPublishesLatestStateTest() throws Exception {
+        ShipService shipService = context.getBean(ShipService.class);
+        TransactionTemplate transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        CountDownLatch committed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MvcResult subscription = subscribe(null);
+
+        // the first update commits first but its callbacks run after the second update's
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> transaction.execute(status -> {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    committed.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            Ship ship = new Ship();
+            ship.setPlanet("Venus");
+            shipService.update(ship, 5L);
+            return null;
+        }));
+
+        try {
+            committed.await(5, TimeUnit.SECONDS);
+            mockMvc.perform(post("/rest/ships/5")
+                    .contentType(MediaType.APPLICATION_JSON_UTF8)
+                    .content("{\"planet\":\"Pluto\"}"))
+                    .andExpect(status().isOk());
+            awaitContent(subscription, "\"planet\":\"Pluto\"");
+        } finally {
+            release.countDown();
+        }
+        first.get(5, TimeUnit.SECONDS);
+
+        String events = awaitContent(subscription, "\"planet\":\"Pluto\"", 2);
+        assertTrue("Последнее событие корабля должно содержать его последнее состояние.",
+                !events.contains("\"planet\":\"Venus\""));
+    }
+
+    //test6
+    @Test
+    public void overflowingSubscriberGetsResetTest() throws Exception {
+        ShipChangeFeed changeFeed = context.getBean(ShipChangeFeed.class);
+        ShipService shipService = context.getBean(ShipService.class);
+        CountDownLatch release = new CountDownLatch(1);
+        SlowEmitter slow = new SlowEmitter(release);
+        int before = changeFeed.getSubscriberCount();
+        changeFeed.subscribe(slow, null);
+
+        long first = changeFeed.getLastSequence() + 1;
+        try {
+            shipService.delete(1L);
+            assertTrue("Отправка первого события не началась.", slow.sending.await(5, TimeUnit.SECONDS));
+            // one event is being sent; the queue takes SUBSCRIBER_BUFFER more and the next one overflows it
+            for (long id = 2; id <= SUBSCRIBER_BUFFER + 3; id++)
+                shipService.delete(id);
+            assertEquals("Переполненный подписчик должен быть отключен.", before, changeFeed.getSubscriberCount());
+        } finally {
+            release.countDown();
+        }
+        assertTrue("Поток переполненного подписчика не был закрыт.", slow.completed.await(5, TimeUnit.SECONDS));
+
+        String epoch = changeFeed.getEpoch();
+        assertEquals(SUBSCRIBER_BUFFER + 2, slow.events.size());
+        for (int i = 0; i <= SUBSCRIBER_BUFFER; i++) {
+            assertTrue("Событие из очереди не было отправлено.",
+                    slow.events.get(i).startsWith("id:" + epoch + "-" + (first + i) + "\nevent:ship"));
+        }
+        assertTrue("После переполнения подписчик должен получить reset с первым пропущенным событием.",
+                slow.events.get(SUBSCRIBER_BUFFER + 1).startsWith(
+                        "id:" + epoch + "-" + (first + SUBSCRIBER_BUFFER + 1) + "\nevent:reset"));
+    }
+
+    private MvcResult subscribe(String lastEventId) throws Exception {
+        return mockMvc.perform(lastEventId == null
+                ? get("/rest/ships/changes").accept(MediaType.TEXT_EVENT_STREAM)
+                : get("/rest/ships/changes").accept(MediaType.TEXT_EVENT_STREAM).header("Last-Event-ID", lastEventId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private String awaitContent(MvcResult subscription, String expected) throws Exception {
+        return awaitContent(subscription, expected, 1);
+    }
+
+    private String awaitContent(MvcResult subscription, String expected, int times) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = subscription.getResponse().getContentAsString();
+        while (count(content, expected) < times && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            content = subscription.getResponse().getContentAsString();
+        }
+        assertTrue("Событие не пришло подписчику: " + expected, count(content, expected) >= times);
+        return content;
+    }
+
+    private static int count(String content, String expected) {
+        int count = 0;
+        for (int i = content.indexOf(expected); i >= 0; i = content.indexOf(expected, i + 1))
+            count++;
+        return count;
+    }
+
+    /**
+     * Records the events sent to it; every send waits until released, like a client reading slowly.
+     */
+    private static final class SlowEmitter extends SseEmitter {
+        private final CountDownLatch release;
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final List<String> events = new CopyOnWriteArrayList<>();
+
+        private SlowEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            sending.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            StringBuilder event = new StringBuilder();
+            for (DataWithMediaType data : builder.build())
+                event.append(data.getData());
+            events.add(event.toString());
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+            super.complete();
+        }
+    }
+
+    /**
+     * Blocks every send, like a client that has stopped reading.
+     */
+    private static final class StalledEmitter extends SseEmitter {
+        private final CountDownLatch release;
+
+        private StalledEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.send(builder);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.space.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.space.controller.utils.TestsHelper;
+import com.space.model.Ship;
+import com.space.service.ShipService;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class ChangelogTest extends AbstractTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    //test1
+    @Test
+    public void changesAreLoggedInOrderTest() throws Exception {
+        mockMvc.perform(post("/rest/ships/")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(TestsHelper.NORMAL_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/rest/ships/5")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content("{\"name\":\"Renamed\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/rest/ships/999")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content("{\"name\":\"Renamed\"}"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/rest/ships/6"))
+                .andExpect(status().isOk());
+
+        JsonNode page = getJson("/rest/ships/changelog?limit=2");
+        assertEquals(2, page.get("changes").size());
+        assertEquals("CREATE", page.get("changes").get(0).get("type").asText());
+        assertEquals(41, page.get("changes").get(0).get("shipId").asLong());
+        assertEquals("UPDATE", page.get("changes").get(1).get("type").asText());
+        assertEquals(5, page.get("changes").get(1).get("shipId").asLong());
+
+        page = getJson("/rest/ships/changelog?limit=2&after=" + page.get("next").asLong());
+        assertEquals("Неуспешные изменения не должны попадать в журнал.", 1, page.get("changes").size());
+        assertEquals("DELETE", page.get("changes").get(0).get("type").asText());
+        assertEquals(6, page.get("changes").get(0).get("shipId").asLong());
+
+        long next = page.get("next").asLong();
+        page = getJson("/rest/ships/changelog?after=" + next);
+        assertEquals(0, page.get("changes").size());
+        assertEquals("Курсор не должен меняться, если новых записей нет.", next, page.get("next").asLong());
+    }
+
+    //test2
+    @Test
+    public void invalidLimitTest() throws Exception {
+        mockMvc.perform(get("/rest/ships/changelog?limit=0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/rest/ships/changelog?limit=501"))
+                .andExpect(status().isBadRequest());
+    }
+
+    //test3
+    @Test
+    public void slowTransactionIsNotSkippedTest() throws Exception {
+        ShipService shipService = context.getBean(ShipService.class);
+        TransactionTemplate transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        CountDownLatch updated = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> transaction.execute(status -> {
+            Ship ship = new Ship();
+            ship.setName("Renamed");
+            shipService.update(ship, 5L);
+            updated.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+
+        try {
+            updated.await(5, TimeUnit.SECONDS);
+            mockMvc.perform(delete("/rest/ships/6"))
+                    .andExpect(status().isOk());
+
+            JsonNode page = getJson("/rest/ships/changelog");
+            assertEquals(1, page.get("changes").size());
+            assertEquals(6, page.get("changes").get(0).get("shipId").asLong());
+            long next = page.get("next").asLong();
+
+            release.countDown();
+            slow.get(5, TimeUnit.SECONDS);
+
+            page = getJson("/rest/ships/changelog?after=" + next);
+            assertEquals("Изменение, зафиксированное позже, не должно оказаться позади курсора.",
+                    1, page.get("changes").size());
+            assertEquals(5, page.get("changes").get(0).get("shipId").asLong());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private JsonNode getJson(String url) throws Exception {
+        return mapper.readTree(mockMvc.perform(get(url)
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+}
@@ -0,0 +1,96 @@
+package com.space.controller;
+
+import com.space.web.GzipResponseFilter;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class CompressionTest extends AbstractTest {
+
+    @Before
+    @Override
+    public void setup() {
+        mockMvc = new AsyncMockMvc(MockMvcBuilders.webAppContextSetup(context)
+                .addFilters(context.getBean(GzipResponseFilter.class))
+                .build());
+    }
+
+    //test1
+    @Test
+    public void getLargeShipListIsGzipped() throws Exception {
+        byte[] plain = mockMvc.perform(get("/rest/ships?pageSize=40")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        byte[] compressed = mockMvc.perform(get("/rest/ships?pageSize=40")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        byte[] unzipped = new byte[plain.length];
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            int read = 0;
+            while (read < unzipped.length)
+                read += in.read(unzipped, read, unzipped.length - read);
+        }
+        assertEquals(new String(plain, "UTF-8"), new String(unzipped, "UTF-8"));
+    }
+
+    //test2
+    @Test
+    public void getSmallResponseIsNotGzipped() throws Exception {
+        mockMvc.perform(get("/rest/ships/count")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    //test3
+    @Test
+    public void getStaticResourceIsCacheable() throws Exception {
+        mockMvc.perform(get("/resources/scripts.js"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("max-age=31536000")));
+    }
+
+    //test4
+    @Test
+    public void eventStreamIsNotBuffered() throws Exception {
+        MvcResult subscription = mockMvc.perform(get("/rest/ships/changes")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .accept(MediaType.ALL))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(delete("/rest/ships/3"))
+                .andExpect(status().isOk());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!subscription.getResponse().getContentAsString().contains("\"id\":3")
+                && System.currentTimeMillis() < deadline)
+            Thread.sleep(20);
+        assertTrue("Событие не дошло до клиента, пока поток открыт.",
+                subscription.getResponse().getContentAsString().contains("\"id\":3"));
+        assertNull(subscription.getResponse().getHeader(HttpHeaders.CONTENT_ENCODING));
+    }
+}
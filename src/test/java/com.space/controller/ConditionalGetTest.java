@@ -0,0 +1,123 @@
+package com.space.controller;
+
+import com.space.controller.utils.TestsHelper;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class ConditionalGetTest extends AbstractTest {
+
+    //test1
+    @Test
+    public void getCountWithCurrentETagReturnsNotModified() throws Exception {
+        String eTag = mockMvc.perform(get("/rest/ships/count")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull("GET /rest/ships/count не возвращает ETag.", eTag);
+
+        mockMvc.perform(get("/rest/ships/count")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag));
+    }
+
+    //test2
+    @Test
+    public void getShipsWithStaleETagAfterCreateReturnsOk() throws Exception {
+        String eTag = mockMvc.perform(get("/rest/ships")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(post("/rest/ships/")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(TestsHelper.NORMAL_JSON))
+                .andExpect(status().isOk());
+
+        String newETag = mockMvc.perform(get("/rest/ships")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals("ETag не изменился после создания корабля.", eTag, newETag);
+    }
+
+    //test3
+    @Test
+    public void getShipWithCurrentETagReturnsNotModified() throws Exception {
+        String eTag = mockMvc.perform(get("/rest/ships/14")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/rest/ships/14")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(post("/rest/ships/14")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content("{\"name\":\"Renamed\"}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/rest/ships/14")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk());
+    }
+
+    //test4
+    @Test
+    public void eTagDependsOnNegotiatedFormat() throws Exception {
+        String jsonETag = mockMvc.perform(get("/rest/ships/14")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        String smileETag = mockMvc.perform(get("/rest/ships/14")
+                .header(HttpHeaders.IF_NONE_MATCH, jsonETag)
+                .accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals("ETag одинаков для разных форматов.", jsonETag, smileETag);
+
+        mockMvc.perform(get("/rest/ships/14")
+                .header(HttpHeaders.IF_NONE_MATCH, smileETag)
+                .accept("application/x-jackson-smile"))
+                .andExpect(status().isNotModified());
+    }
+
+    //test5
+    @Test
+    public void countETagNamesTheFormatActuallyWritten() throws Exception {
+        String eTag = mockMvc.perform(get("/rest/ships/count")
+                .accept("application/x-ship, application/json;q=0.5"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull("GET /rest/ships/count не возвращает ETag.", eTag);
+        assertTrue("ETag не соответствует формату ответа: " + eTag, eTag.endsWith("-json\""));
+
+        String shipETag = mockMvc.perform(get("/rest/ships/14")
+                .accept("application/x-ship, application/json;q=0.5"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ship"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertTrue("ETag не соответствует формату ответа: " + shipETag, shipETag.endsWith("-x-ship\""));
+    }
+}
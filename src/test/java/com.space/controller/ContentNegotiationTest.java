@@ -0,0 +1,70 @@
+package com.space.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class ContentNegotiationTest extends AbstractTest {
+
+    //test1
+    @Test
+    public void getShipsWithoutAcceptReturnsJson() throws Exception {
+        mockMvc.perform(get("/rest/ships"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    //test2
+    @Test
+    public void getShipsAsSmileMatchesJson() throws Exception {
+        JsonNode expected = readJson("application/json", new ObjectMapper());
+        JsonNode actual = readJson("application/x-jackson-smile", new ObjectMapper(new SmileFactory()));
+
+        assertEquals("Ответ в формате Smile не совпадает с JSON.", expected, actual);
+    }
+
+    //test3
+    @Test
+    public void getShipsAsCborMatchesJson() throws Exception {
+        JsonNode expected = readJson("application/json", new ObjectMapper());
+        JsonNode actual = readJson("application/cbor", new ObjectMapper(new CBORFactory()));
+
+        assertEquals("Ответ в формате CBOR не совпадает с JSON.", expected, actual);
+    }
+
+    //test4
+    @Test
+    public void getShipAsBinary() throws Exception {
+        byte[] body = mockMvc.perform(get("/rest/ships/14")
+                .accept("application/x-ship"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ship"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        assertEquals(1, in.readByte());
+        assertEquals(1, in.readInt());
+        assertEquals(0x1FF, in.readShort());
+        assertEquals(14L, in.readLong());
+    }
+
+    private JsonNode readJson(String accept, ObjectMapper mapper) throws Exception {
+        byte[] body = mockMvc.perform(get("/rest/ships?pageSize=10")
+                .accept(accept))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(accept))
+                .andReturn().getResponse().getContentAsByteArray();
+        return mapper.readTree(body);
+    }
+}
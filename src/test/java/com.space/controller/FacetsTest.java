@@ -0,0 +1,77 @@
+package com.space.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.space.controller.utils.ShipInfoTest;
+import com.space.controller.utils.StatementCounter;
+import com.space.controller.utils.TestsHelper;
+import com.space.metrics.InstrumentedDataSource;
+import com.space.model.ShipType;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class FacetsTest extends AbstractTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final TestsHelper testsHelper = new TestsHelper();
+
+    //test1
+    @Test
+    public void facetsInOneQueryTest() throws Exception {
+        StatementCounter counter = new StatementCounter();
+        InstrumentedDataSource dataSource = context.getBean(InstrumentedDataSource.class);
+        dataSource.addListener(counter);
+        JsonNode facets;
+        try {
+            facets = mapper.readTree(mockMvc.perform(get("/rest/ships/facets?minSpeed=0.5")
+                    .accept(MediaType.APPLICATION_JSON_UTF8))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+        } finally {
+            dataSource.removeListener(counter);
+        }
+
+        assertEquals("Все фасеты должны считаться одним запросом.", 1, counter.getStatementCount());
+
+        List<ShipInfoTest> expected = testsHelper.getShipInfosByMinSpeed(0.5, testsHelper.getAllShips());
+        for (ShipType shipType : ShipType.values())
+            assertEquals(testsHelper.getShipInfosByShipType(shipType, expected).size(),
+                    facets.get("shipType").get(shipType.name()).asLong());
+        assertEquals(testsHelper.getShipInfosByIsUsed(true, expected).size(),
+                facets.get("isUsed").get("true").asLong());
+        assertEquals(testsHelper.getShipInfosByIsUsed(false, expected).size(),
+                facets.get("isUsed").get("false").asLong());
+
+        long planets = 0;
+        for (JsonNode count : facets.get("planet"))
+            planets += count.asLong();
+        assertEquals(expected.size(), planets);
+    }
+
+    //test2
+    @Test
+    public void selectedFacetsTest() throws Exception {
+        JsonNode facets = mapper.readTree(mockMvc.perform(get("/rest/ships/facets?facets=isUsed&shipType=MERCHANT")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+
+        assertNull(facets.get("planet"));
+        assertEquals(testsHelper.getShipInfosByShipType(ShipType.MERCHANT, testsHelper.getAllShips()).size(),
+                facets.get("isUsed").get("true").asLong() + facets.get("isUsed").get("false").asLong());
+    }
+
+    //test3
+    @Test
+    public void unknownFacetTest() throws Exception {
+        mockMvc.perform(get("/rest/ships/facets?facets=speed"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,128 @@
+package com.space.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.space.controller.utils.TestsHelper;
+import com.space.model.Ship;
+import com.space.service.ShipService;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class FleetStatsTest extends AbstractTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    //test1
+    @Test
+    public void fleetStatsFollowMutationsTest() throws Exception {
+        mockMvc.perform(post("/admin/fleet-stats/rebuild")).andExpect(status().isOk());
+
+        JsonNode stats = getJson("/rest/ships/stats");
+        assertEquals(40, stats.get("count").asLong());
+        assertEquals(13, stats.get("byShipType").get("MILITARY").asLong());
+        assertEquals(40, sumHistogram(stats));
+
+        mockMvc.perform(post("/rest/ships/")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(TestsHelper.NORMAL_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/rest/ships/5")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(String.format(TestsHelper.JSON_SKELETON_2, "Pluto", "MERCHANT", 32998274577071L)))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/rest/ships/6"))
+                .andExpect(status().isOk());
+
+        JsonNode incremental = getJson("/rest/ships/stats");
+        mockMvc.perform(post("/admin/fleet-stats/rebuild")).andExpect(status().isOk());
+        JsonNode rebuilt = getJson("/rest/ships/stats");
+
+        assertEquals("Статистика после изменений не совпадает с пересчитанной с нуля.", rebuilt, incremental);
+        assertEquals(1, incremental.get("byPlanet").get("Pluto").asLong());
+    }
+
+    //test2
+    @Test
+    public void filteredStatsUseGroupByTest() throws Exception {
+        JsonNode stats = getJson("/rest/ships/stats?planet=Saturn&isUsed=false");
+        assertEquals(new TestsHelper().getShipInfosByIsUsed(false,
+                new TestsHelper().getShipInfosByPlanet("Saturn", new TestsHelper().getAllShips())).size(),
+                stats.get("count").asLong());
+        assertEquals(stats.get("count").asLong(), stats.get("byPlanet").get("Saturn").asLong());
+        assertEquals(0, stats.get("usedCount").asLong());
+    }
+
+    //test3
+    @Test
+    public void lateCommitCallbackKeepsLatestStateTest() throws Exception {
+        mockMvc.perform(post("/admin/fleet-stats/rebuild")).andExpect(status().isOk());
+        ShipService shipService = context.getBean(ShipService.class);
+        TransactionTemplate transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        CountDownLatch committed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // the first update commits first but its callbacks run after the second update's
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> transaction.execute(status -> {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    committed.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            Ship ship = new Ship();
+            ship.setPlanet("Venus");
+            shipService.update(ship, 5L);
+            return null;
+        }));
+
+        try {
+            committed.await(5, TimeUnit.SECONDS);
+            mockMvc.perform(post("/rest/ships/5")
+                    .contentType(MediaType.APPLICATION_JSON_UTF8)
+                    .content("{\"planet\":\"Pluto\"}"))
+                    .andExpect(status().isOk());
+        } finally {
+            release.countDown();
+        }
+        first.get(5, TimeUnit.SECONDS);
+
+        JsonNode incremental = getJson("/rest/ships/stats");
+        mockMvc.perform(post("/admin/fleet-stats/rebuild")).andExpect(status().isOk());
+        assertEquals("Запоздавшее изменение перезаписало более новое состояние корабля.",
+                getJson("/rest/ships/stats"), incremental);
+        assertEquals(1, incremental.get("byPlanet").get("Pluto").asLong());
+    }
+
+    private long sumHistogram(JsonNode stats) {
+        long sum = 0;
+        for (JsonNode bucket : stats.get("ratingHistogram"))
+            sum += bucket.get("count").asLong();
+        return sum;
+    }
+
+    private JsonNode getJson(String url) throws Exception {
+        return mapper.readTree(mockMvc.perform(get(url)
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+}
@@ -0,0 +1,163 @@
+package com.space.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.space.controller.utils.TestsHelper;
+import com.space.metrics.InstrumentedDataSource;
+import com.space.metrics.StatementListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@TestPropertySource(properties = {"ships.ingest.queueSize=1", "ships.ingest.lingerMillis=0",
+        "ships.ingest.offerTimeoutMillis=10"})
+public class IngestTest extends AbstractTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final BlockedWriter blockedWriter = new BlockedWriter();
+    private InstrumentedDataSource dataSource;
+
+    @Before
+    public void addListener() {
+        dataSource = context.getBean(InstrumentedDataSource.class);
+        dataSource.addListener(blockedWriter);
+    }
+
+    @After
+    public void removeListener() {
+        blockedWriter.release.countDown();
+        dataSource.removeListener(blockedWriter);
+    }
+
+    //test1
+    @Test
+    public void asyncCreateTest() throws Exception {
+        blockedWriter.release.countDown();
+        String trackingId = submit()
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Preference-Applied", "respond-async"))
+                .andExpect(header().exists(HttpHeaders.LOCATION))
+                .andReturn().getResponse().getHeader(HttpHeaders.LOCATION)
+                .replace("http://localhost/rest/ships/ingest/", "");
+
+        JsonNode status = awaitCreated(trackingId);
+        JsonNode ship = mapper.readTree(mockMvc.perform(get("/rest/ships/" + status.get("shipId").asLong()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        assertEquals("Создан не тот корабль", "123456789", ship.get("name").asText());
+    }
+
+    //test2
+    @Test
+    public void locationIncludesContextPathTest() throws Exception {
+        blockedWriter.release.countDown();
+        String location = mockMvc.perform(post("/cosmoport/rest/ships/")
+                .contextPath("/cosmoport")
+                .header("Prefer", "respond-async")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(TestsHelper.NORMAL_JSON))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+
+        assertTrue("Неверный адрес статуса: " + location,
+                location.startsWith("http://localhost/cosmoport/rest/ships/ingest/"));
+        awaitCreated(location.substring(location.lastIndexOf('/') + 1));
+    }
+
+    //test3
+    @Test
+    public void asyncCreateValidatesSynchronouslyTest() throws Exception {
+        mockMvc.perform(post("/rest/ships/")
+                .header("Prefer", "respond-async")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(TestsHelper.EMPTY_NAME_JSON))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/rest/ships/ingest/unknown"))
+                .andExpect(status().isNotFound());
+    }
+
+    //test4
+    @Test
+    public void fullQueueRejectsTest() throws Exception {
+        String first = trackingId(submit().andExpect(status().isAccepted()));
+        assertTrue("Писатель не начал запись", blockedWriter.entered.await(5, TimeUnit.SECONDS));
+
+        String second = trackingId(submit().andExpect(status().isAccepted()));
+        submit()
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+
+        JsonNode queued = mapper.readTree(mockMvc.perform(get("/rest/ships/ingest/" + second))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+        assertEquals("Корабль в очереди имеет неверное состояние", "QUEUED", queued.get("state").asText());
+
+        blockedWriter.release.countDown();
+        awaitCreated(first);
+        awaitCreated(second);
+    }
+
+    private ResultActions submit() throws Exception {
+        return mockMvc.perform(post("/rest/ships/")
+                .header("Prefer", "respond-async")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(TestsHelper.NORMAL_JSON));
+    }
+
+    private String trackingId(ResultActions result) throws Exception {
+        return mapper.readTree(result.andReturn().getResponse().getContentAsString()).get("trackingId").asText();
+    }
+
+    private JsonNode awaitCreated(String trackingId) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            JsonNode status = mapper.readTree(mockMvc.perform(get("/rest/ships/ingest/" + trackingId))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+            if (!"QUEUED".equals(status.get("state").asText()) || System.nanoTime() > deadline) {
+                assertEquals("Корабль не создан: " + status, "CREATED", status.get("state").asText());
+                return status;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Holds the write-behind writer in its first statement until released.
+     */
+    private static class BlockedWriter implements StatementListener {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void statementStarting(Statement statement) {
+            if (!Thread.currentThread().getName().equals("ship-ingest"))
+                return;
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void statementExecuted(String sql, long nanos) {
+        }
+    }
+}
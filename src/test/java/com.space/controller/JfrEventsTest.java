@@ -0,0 +1,79 @@
+package com.space.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.space.metrics.jfr.ShipMutationEvent;
+import com.space.metrics.jfr.ShipQueryEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class JfrEventsTest extends AbstractTest {
+
+    //test1
+    @Test
+    public void listAndUpdateEmitEventsTest() throws Exception {
+        List<RecordedEvent> events;
+        int listed;
+        try (Recording recording = new Recording()) {
+            recording.enable(ShipQueryEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(ShipMutationEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+
+            String list = mockMvc.perform(get("/rest/ships?planet=Mars&pageSize=40")
+                    .accept(MediaType.APPLICATION_JSON_UTF8))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            listed = new ObjectMapper().readTree(list).size();
+            mockMvc.perform(post("/rest/ships/1")
+                    .contentType(MediaType.APPLICATION_JSON_UTF8)
+                    .content("{\"crewSize\":1000}"))
+                    .andExpect(status().isOk());
+
+            recording.stop();
+            Path file = Files.createTempFile("cosmoport", ".jfr");
+            try {
+                recording.dump(file);
+                events = RecordingFile.readAllEvents(file);
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        RecordedEvent query = single(events, "com.space.ShipQuery");
+        assertEquals("planet", query.getString("filterShape"));
+        assertFalse("Первый запрос не может быть взят из кэша", query.getBoolean("cacheHit"));
+        assertEquals(40, query.getInt("rowsScanned"));
+        assertEquals(listed, query.getInt("rowsReturned"));
+
+        RecordedEvent mutation = single(events, "com.space.ShipMutation");
+        assertEquals("UPDATE", mutation.getString("operation"));
+        assertEquals(1L, mutation.getLong("shipId"));
+        assertEquals("crewSize", mutation.getString("changedFields"));
+        assertFalse(mutation.getDuration("ratingNanos").isNegative());
+        assertTrue("Время обновления не записано", mutation.getDuration().compareTo(
+                mutation.getDuration("ratingNanos")) >= 0);
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> named = events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+        assertEquals("Неверное число событий " + name + ": " + named, 1, named.size());
+        return named.get(0);
+    }
+}
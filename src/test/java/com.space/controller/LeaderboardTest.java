@@ -0,0 +1,84 @@
+package com.space.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.space.controller.utils.ShipInfoTest;
+import com.space.controller.utils.StatementCounter;
+import com.space.controller.utils.TestsHelper;
+import com.space.metrics.InstrumentedDataSource;
+import com.space.model.ShipType;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class LeaderboardTest extends AbstractTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final TestsHelper testsHelper = new TestsHelper();
+
+    //test1
+    @Test
+    public void topByRatingTest() throws Exception {
+        StatementCounter counter = new StatementCounter();
+        InstrumentedDataSource dataSource = context.getBean(InstrumentedDataSource.class);
+        dataSource.addListener(counter);
+        List<ShipInfoTest> actual;
+        try {
+            actual = getLeaderboard("/rest/ships/leaderboard?limit=5");
+        } finally {
+            dataSource.removeListener(counter);
+        }
+
+        List<ShipInfoTest> expected = testsHelper.getAllShips().stream()
+                .sorted(Comparator.comparing((ShipInfoTest ship) -> ship.rating)
+                        .thenComparing(ship -> ship.id).reversed())
+                .limit(5)
+                .collect(Collectors.toList());
+
+        assertEquals("Возвращается неправильный список лучших кораблей.", expected, actual);
+        assertTrue("Лидерборд не должен читать весь флот.", counter.getRowCount() <= 5);
+    }
+
+    //test2
+    @Test
+    public void bottomBySpeedPerShipTypeTest() throws Exception {
+        List<ShipInfoTest> actual = getLeaderboard(
+                "/rest/ships/leaderboard?order=SPEED&direction=ASC&limit=3&shipType=TRANSPORT");
+
+        List<ShipInfoTest> expected = testsHelper.getShipInfosByShipType(ShipType.TRANSPORT, testsHelper.getAllShips())
+                .stream()
+                .sorted(Comparator.comparing((ShipInfoTest ship) -> ship.speed).thenComparing(ship -> ship.id))
+                .limit(3)
+                .collect(Collectors.toList());
+
+        assertEquals("Возвращается неправильный список самых медленных кораблей.", expected, actual);
+    }
+
+    //test3
+    @Test
+    public void invalidLeaderboardTest() throws Exception {
+        mockMvc.perform(get("/rest/ships/leaderboard?order=DATE"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/rest/ships/leaderboard?limit=0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/rest/ships/leaderboard?limit=101"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private List<ShipInfoTest> getLeaderboard(String url) throws Exception {
+        String content = mockMvc.perform(get(url)
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return mapper.readValue(content, new TypeReference<List<ShipInfoTest>>() {
+        });
+    }
+}
@@ -0,0 +1,28 @@
+package com.space.controller;
+
+import org.junit.Test;
+import org.springframework.http.MediaType;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class MetricsTest extends AbstractTest {
+
+    //test1
+    @Test
+    public void getMetricsAfterFilterRequest() throws Exception {
+        mockMvc.perform(get("/rest/ships?name=nt&minSpeed=0.3")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/admin/metrics"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_PLAIN))
+                .andExpect(content().string(containsString("cosmoport_http_request_duration_seconds_bucket{endpoint=\"ShipController.getShipsList\",le=\"+Inf\"}")))
+                .andExpect(content().string(containsString("cosmoport_filter_parameter_used_total{parameter=\"minSpeed\"}")))
+                .andExpect(content().string(containsString("cosmoport_repository_query_duration_seconds_count{method=\"findAllRecords\"}")))
+                .andExpect(content().string(containsString("cosmoport_jdbc_connections_open")));
+    }
+}
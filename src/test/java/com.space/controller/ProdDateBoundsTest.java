@@ -0,0 +1,71 @@
+package com.space.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class ProdDateBoundsTest extends AbstractTest {
+
+    private static final String SHIP_JSON =
+            "{" +
+                    "\"name\": \"Bounds\"," +
+                    "\"planet\":\"Earth\"," +
+                    "\"shipType\": \"MILITARY\"," +
+                    "\"prodDate\" : %d," +
+                    "\"isUsed\":false," +
+                    "\"speed\":0.5," +
+                    "\"crewSize\": 40" +
+                    "}";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    //test1
+    @Test
+    public void createShipAtFirstMillisOf2800Test() throws Exception {
+        assertEquals("Неверный рейтинг корабля 2800 года.", 0.18, create(startOf(2800)), 0);
+    }
+
+    //test2
+    @Test
+    public void createShipBefore2800Test() throws Exception {
+        mockMvc.perform(post("/rest/ships/")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(String.format(SHIP_JSON, startOf(2800) - 1)))
+                .andExpect(status().isBadRequest());
+    }
+
+    //test3
+    @Test
+    public void createShipAtLastMillisOf3019Test() throws Exception {
+        assertEquals("Неверный рейтинг корабля 3019 года.", 40.0, create(startOf(3020) - 1), 0);
+    }
+
+    //test4
+    @Test
+    public void createShipIn3020Test() throws Exception {
+        mockMvc.perform(post("/rest/ships/")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(String.format(SHIP_JSON, startOf(3020))))
+                .andExpect(status().isBadRequest());
+    }
+
+    private double create(long prodDate) throws Exception {
+        String contentAsString = mockMvc.perform(post("/rest/ships/")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(String.format(SHIP_JSON, prodDate)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return mapper.readTree(contentAsString).get("rating").asDouble();
+    }
+
+    private static long startOf(int year) {
+        return LocalDate.of(year, 1, 1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,89 @@
+package com.space.controller;
+
+import com.space.metrics.MetricsRegistry;
+import com.space.model.ShipRecord;
+import com.space.service.ShipQueryCoalescer;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class QueryCoalescingTest extends AbstractTest {
+
+    //test1
+    @Test
+    public void failedQueryReleasesFollowersTest() throws Exception {
+        ShipQueryCoalescer coalescer = context.getBean(ShipQueryCoalescer.class);
+        MetricsRegistry.Counter shared = context.getBean(MetricsRegistry.class).counter("cosmoport_filter_queries_total",
+                "Filter requests by how they were answered", "result", "shared");
+        Object key = "failedQueryReleasesFollowersTest";
+        AssertionError failure = new AssertionError("query failed");
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLeader = new CountDownLatch(1);
+        AtomicInteger followerRuns = new AtomicInteger();
+
+        CompletableFuture<List<ShipRecord>> leader = CompletableFuture.supplyAsync(() ->
+                coalescer.execute(key, () -> {
+                    leaderStarted.countDown();
+                    try {
+                        releaseLeader.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw failure;
+                }));
+        try {
+            assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+            long sharedBefore = shared.get();
+            CompletableFuture<Thread> followerThread = new CompletableFuture<>();
+            CompletableFuture<List<ShipRecord>> follower = CompletableFuture.supplyAsync(() -> {
+                followerThread.complete(Thread.currentThread());
+                return coalescer.execute(key, () -> {
+                    followerRuns.incrementAndGet();
+                    return Collections.emptyList();
+                });
+            });
+            awaitWaiting(followerThread.get(5, TimeUnit.SECONDS), shared, sharedBefore);
+            releaseLeader.countDown();
+
+            assertFailsWith(failure, leader);
+            assertFailsWith(failure, follower);
+            assertEquals("Ожидающий запрос выполнил свой запрос вместо общего", 0, followerRuns.get());
+        } finally {
+            releaseLeader.countDown();
+        }
+        assertTrue("Упавший запрос остался в кэше", coalescer.execute(key, Collections::emptyList).isEmpty());
+    }
+
+    /**
+     * Waits until the follower has joined the shared query and is blocked on its result.
+     */
+    private static void awaitWaiting(Thread follower, MetricsRegistry.Counter shared, long sharedBefore)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (shared.get() == sharedBefore || follower.getState() != Thread.State.WAITING) {
+            assertTrue("Второй запрос не присоединился к выполняемому", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static void assertFailsWith(Throwable expected, CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Запрос не завершился ошибкой");
+        } catch (ExecutionException e) {
+            assertSame("Неожиданная ошибка " + e.getCause(), expected, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.space.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class QueryStatsTest extends AbstractTest {
+
+    //test1
+    @Test
+    public void getQueryStatsGroupsStatementsByFingerprint() throws Exception {
+        mockMvc.perform(delete("/admin/queries"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/rest/ships/14")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/rest/ships/15")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk());
+
+        String contentAsString = mockMvc.perform(get("/admin/queries")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode stats = new ObjectMapper().readTree(contentAsString);
+        JsonNode fingerprints = stats.get("fingerprints");
+        assertEquals("Запросы по id не сгруппированы в один отпечаток.", 1, fingerprints.size());
+        assertEquals(2, fingerprints.get(0).get("count").asInt());
+        assertTrue(fingerprints.get(0).get("fingerprint").asText().contains("where ship0_.id=?"));
+        assertFalse(stats.get("hibernate").get("enabled").asBoolean());
+    }
+}
@@ -0,0 +1,342 @@
+package com.space.controller;
+
+import com.space.controller.utils.TestsHelper;
+import com.space.metrics.InstrumentedDataSource;
+import com.space.metrics.MetricsRegistry;
+import com.space.metrics.StatementListener;
+import com.space.model.ShipRecord;
+import com.space.service.ShipQueryCoalescer;
+import com.space.web.QueryGuard;
+import com.space.web.QueryTimeoutInterceptor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class QueryTimeoutTest extends AbstractTest {
+    private static final String ENDLESS_QUERY =
+            "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 1000000) A, SYSTEM_RANGE(1, 1000000) B";
+
+    private final SlowStatements slowStatements = new SlowStatements();
+    private InstrumentedDataSource dataSource;
+    private QueryGuard queryGuard;
+
+    @Before
+    public void addListener() {
+        dataSource = context.getBean(InstrumentedDataSource.class);
+        dataSource.addListener(slowStatements);
+        queryGuard = context.getBean(QueryGuard.class);
+    }
+
+    @After
+    public void removeListener() {
+        dataSource.removeListener(slowStatements);
+    }
+
+    //test1
+    @Test
+    public void requestTimeoutStopsFurtherStatementsTest() throws Exception {
+        String before = mockMvc.perform(get("/rest/ships/1"))
+                .andReturn().getResponse().getContentAsString();
+
+        slowStatements.delayMillis = 300;
+        mockMvc.perform(post("/rest/ships/1")
+                .header(QueryTimeoutInterceptor.TIMEOUT_HEADER, "100")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(TestsHelper.NORMAL_JSON))
+                .andExpect(status().isServiceUnavailable());
+        slowStatements.delayMillis = 0;
+
+        String after = mockMvc.perform(get("/rest/ships/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals("Прерванное обновление изменило корабль", before, after);
+        assertTrue("Запрос остался в списке выполняемых", queryGuard.getRunning().stream()
+                .noneMatch(guard -> guard.getName().endsWith("ShipController.updateShip")));
+    }
+
+    //test2
+    @Test
+    public void deadlineCancelsRunningStatementTest() throws Exception {
+        long start = System.nanoTime();
+        QueryGuard.Guard guard = queryGuard.open("test", 100);
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeQuery(ENDLESS_QUERY);
+            fail("Запрос не был прерван по таймауту");
+        } catch (SQLTimeoutException e) {
+            assertEquals(QueryGuard.Reason.TIMED_OUT, guard.getReason());
+        } finally {
+            queryGuard.close(guard);
+        }
+        assertTrue("Запрос прерван слишком поздно", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    //test3
+    @Test
+    public void cancelRunningRequestTest() throws Exception {
+        CompletableFuture<QueryGuard.Guard> opened = new CompletableFuture<>();
+        CompletableFuture<Void> query = CompletableFuture.runAsync(() -> {
+            QueryGuard.Guard guard = queryGuard.open("test", 0);
+            opened.complete(guard);
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.executeQuery(ENDLESS_QUERY);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            } finally {
+                queryGuard.close(guard);
+            }
+        });
+
+        QueryGuard.Guard guard = opened.get(5, TimeUnit.SECONDS);
+        try {
+            awaitExecution(ENDLESS_QUERY);
+
+            mockMvc.perform(delete("/admin/queries/running/" + guard.getId()))
+                    .andExpect(status().isOk());
+            try {
+                query.get(5, TimeUnit.SECONDS);
+                fail("Запрос не был отменён");
+            } catch (ExecutionException e) {
+                assertTrue("Неожиданная ошибка " + e.getCause(), e.getCause().getCause() instanceof SQLTimeoutException);
+            }
+        } finally {
+            queryGuard.cancel(guard.getId());
+        }
+        assertEquals(QueryGuard.Reason.CANCELLED, guard.getReason());
+
+        mockMvc.perform(delete("/admin/queries/running/" + guard.getId()))
+                .andExpect(status().isNotFound());
+    }
+
+    //test4
+    @Test
+    public void followerRetriesWhenLeaderIsCancelledTest() throws Exception {
+        ShipQueryCoalescer coalescer = context.getBean(ShipQueryCoalescer.class);
+        MetricsRegistry.Counter shared = context.getBean(MetricsRegistry.class).counter("cosmoport_filter_queries_total",
+                "Filter requests by how they were answered", "result", "shared");
+        Object key = "followerRetriesWhenLeaderIsCancelledTest";
+        CompletableFuture<QueryGuard.Guard> leaderGuard = new CompletableFuture<>();
+        AtomicInteger ownRuns = new AtomicInteger();
+
+        CompletableFuture<List<ShipRecord>> leader = CompletableFuture.supplyAsync(() -> {
+            QueryGuard.Guard guard = queryGuard.open("leader", 0);
+            try {
+                return coalescer.execute(key, () -> {
+                    leaderGuard.complete(guard);
+                    guard.whenCancelled().toCompletableFuture().join();
+                    throw new QueryTimeoutException("leader cancelled", guard.newCancelledException());
+                });
+            } finally {
+                queryGuard.close(guard);
+            }
+        });
+        QueryGuard.Guard guard = leaderGuard.get(5, TimeUnit.SECONDS);
+
+        long sharedBefore = shared.get();
+        CompletableFuture<List<ShipRecord>> follower = CompletableFuture.supplyAsync(() -> {
+            QueryGuard.Guard own = queryGuard.open("follower", 0);
+            try {
+                return coalescer.execute(key, () -> {
+                    ownRuns.incrementAndGet();
+                    return Collections.emptyList();
+                });
+            } finally {
+                queryGuard.close(own);
+            }
+        });
+        awaitShared(shared, sharedBefore);
+        queryGuard.cancel(guard.getId());
+
+        try {
+            leader.get(5, TimeUnit.SECONDS);
+            fail("Запрос лидера не был отменён");
+        } catch (ExecutionException e) {
+            assertTrue("Неожиданная ошибка " + e.getCause(), e.getCause() instanceof QueryTimeoutException);
+        }
+        assertTrue(follower.get(5, TimeUnit.SECONDS).isEmpty());
+        assertEquals("Ожидающий запрос должен выполниться заново под своим ограничением", 1, ownRuns.get());
+    }
+
+    //test5
+    @Test
+    public void followerStopsWaitingAtItsDeadlineTest() throws Exception {
+        ShipQueryCoalescer coalescer = context.getBean(ShipQueryCoalescer.class);
+        Object key = "followerStopsWaitingAtItsDeadlineTest";
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLeader = new CountDownLatch(1);
+
+        CompletableFuture<List<ShipRecord>> leader = CompletableFuture.supplyAsync(() ->
+                coalescer.execute(key, () -> {
+                    leaderStarted.countDown();
+                    try {
+                        releaseLeader.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return Collections.emptyList();
+                }));
+        try {
+            assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+            long start = System.nanoTime();
+            QueryGuard.Guard guard = queryGuard.open("follower", 100);
+            try {
+                coalescer.execute(key, Collections::emptyList);
+                fail("Ожидающий запрос не был прерван по своему таймауту");
+            } catch (QueryTimeoutException e) {
+                assertEquals(QueryGuard.Reason.TIMED_OUT, guard.getReason());
+            } finally {
+                queryGuard.close(guard);
+            }
+            assertTrue("Ожидающий запрос прерван слишком поздно",
+                    System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            assertTrue("Запрос лидера не должен завершаться раньше времени", !leader.isDone());
+        } finally {
+            releaseLeader.countDown();
+        }
+        assertTrue(leader.get(5, TimeUnit.SECONDS).isEmpty());
+    }
+
+    //test6
+    @Test
+    public void clientDisconnectCancelsQueriesTest() throws Exception {
+        HeldStatements held = new HeldStatements();
+        dataSource.removeListener(queryGuard);
+        dataSource.addListener(held);
+        dataSource.addListener(queryGuard);
+        try {
+            MockMvc rawMockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+            MvcResult result = rawMockMvc.perform(get("/rest/ships?pageSize=40"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            QueryGuard.Guard guard = held.guard.get(5, TimeUnit.SECONDS);
+            assertTrue("Запрос выполняется не под ограничением своего запроса",
+                    guard.getName().endsWith("ShipController.getShipsList"));
+
+            MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+            for (AsyncListener listener : asyncContext.getListeners())
+                listener.onError(new AsyncEvent(asyncContext, new IOException("Broken pipe")));
+            assertEquals(QueryGuard.Reason.DISCONNECTED, guard.getReason());
+            for (AsyncListener listener : asyncContext.getListeners())
+                listener.onComplete(new AsyncEvent(asyncContext));
+            assertTrue("Запрос остался в списке выполняемых", queryGuard.getRunning().stream()
+                    .noneMatch(running -> running.getId() == guard.getId()));
+
+            ThreadPoolTaskExecutor executor = context.getBean("asyncRequestExecutor", ThreadPoolTaskExecutor.class);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (executor.getActiveCount() > 0) {
+                assertTrue("Обработчик не завершился", System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+            assertEquals("Запрос отключившегося клиента выполнился", 0, held.executed.get());
+        } finally {
+            dataSource.removeListener(held);
+        }
+    }
+
+    private static void awaitShared(MetricsRegistry.Counter shared, long before) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (shared.get() == before) {
+            assertTrue("Второй запрос не присоединился к выполняемому", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+        // the follower counts itself just before it starts waiting
+        Thread.sleep(50);
+    }
+
+    /**
+     * Waits until the database reports the statement as executing, not merely handed to the driver.
+     */
+    private void awaitExecution(String sql) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SESSIONS WHERE STATEMENT = ?")) {
+            statement.setString(1, sql);
+            while (true) {
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    if (resultSet.getInt(1) > 0)
+                        return;
+                }
+                assertTrue("Запрос не начал выполняться", System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    /**
+     * Holds back the statements of a guarded request until its guard is cancelled, so that they
+     * reach the guard only afterwards.
+     */
+    private class HeldStatements implements StatementListener {
+        private final CompletableFuture<QueryGuard.Guard> guard = new CompletableFuture<>();
+        private final AtomicInteger executed = new AtomicInteger();
+
+        @Override
+        public void statementStarting(Statement statement) {
+            QueryGuard.Guard current = queryGuard.currentGuard();
+            if (current == null)
+                return;
+
+            guard.complete(current);
+            current.whenCancelled().toCompletableFuture().join();
+        }
+
+        @Override
+        public void statementExecuted(String sql, long nanos) {
+            QueryGuard.Guard current = queryGuard.currentGuard();
+            if (current != null && current == guard.getNow(null))
+                executed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Makes every statement take at least {@code delayMillis}, as if the database were overloaded.
+     */
+    private static class SlowStatements implements StatementListener {
+        private volatile long delayMillis;
+
+        @Override
+        public void statementExecuted(String sql, long nanos) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.space.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@TestPropertySource(properties = {"ships.rating.version=2", "ships.rating.currentYear=3020",
+        "ships.rating.recompute.chunkSize=7", "ships.rating.recompute.pauseMillis=0"})
+public class RatingRecomputeTest extends AbstractTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    //test1
+    @Test
+    public void recomputeRatesWholeFleetWithNewFormula() throws Exception {
+        assertEquals("Рейтинги, посчитанные старой формулой, не считаются устаревшими.",
+                false, getJson("/admin/ratings/check").get("consistent").asBoolean());
+
+        mockMvc.perform(post("/admin/ratings/recompute"))
+                .andExpect(status().isAccepted());
+
+        JsonNode progress = getJson("/admin/ratings/recompute");
+        for (int i = 0; i < 100 && progress.get("state").asText().equals("RUNNING"); i++) {
+            Thread.sleep(50);
+            progress = getJson("/admin/ratings/recompute");
+        }
+        assertEquals("Пересчет рейтингов не завершился успешно: " + progress, "DONE", progress.get("state").asText());
+        assertEquals(40, progress.get("rated").asLong());
+
+        assertTrue("После пересчета остались рейтинги, не совпадающие с формулой.",
+                getJson("/admin/ratings/check").get("consistent").asBoolean());
+        // Star Destroyer: 80 * 0.92 / (3020 - 3017 + 1)
+        assertEquals(18.4, getJson("/rest/ships/40").get("rating").asDouble(), 0);
+    }
+
+    private JsonNode getJson(String url) throws Exception {
+        return mapper.readTree(mockMvc.perform(get(url)
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+}
@@ -0,0 +1,60 @@
+package com.space.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.space.controller.utils.TestsHelper;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class RatingTest extends AbstractTest {
+
+    //test1
+    @Test
+    public void storedRatingsMatchFormulaAfterCreateAndUpdate() throws Exception {
+        mockMvc.perform(post("/rest/ships/")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(TestsHelper.CORRECT_COMPUTE_RATING_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/rest/ships/17")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(TestsHelper.IS_USED_TRUE_JSON))
+                .andExpect(status().isOk());
+
+        JsonNode check = getCheck();
+        assertEquals("Рейтинг в базе не совпадает с формулой для кораблей: " + check.get("mismatchedIds"),
+                "[7]", check.get("mismatchedIds").toString());
+    }
+
+    //test2
+    @Test
+    public void updateRatesSeedShipWithFormula() throws Exception {
+        // Icarus I is seeded with 0.27, while 80 * 0.08 / (3019 - 2999 + 1) = 0.30
+        assertFalse(getCheck().get("consistent").asBoolean());
+
+        String contentAsString = mockMvc.perform(post("/rest/ships/7")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content("{\"crewSize\":826}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(0.3, new ObjectMapper().readTree(contentAsString).get("rating").asDouble(), 0);
+        JsonNode check = getCheck();
+        assertTrue("Рейтинг в базе не совпадает с формулой для кораблей: " + check.get("mismatchedIds"),
+                check.get("consistent").asBoolean());
+    }
+
+    private JsonNode getCheck() throws Exception {
+        String contentAsString = mockMvc.perform(get("/admin/ratings/check")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return new ObjectMapper().readTree(contentAsString);
+    }
+}
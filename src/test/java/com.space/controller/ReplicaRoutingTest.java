@@ -0,0 +1,71 @@
+package com.space.controller;
+
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.servlet.http.Cookie;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The embedded replica is loaded once and never receives writes, so it behaves like a replica
+ * whose replication lags indefinitely.
+ */
+@TestPropertySource(properties = "ships.datasource.embeddedReplica=true")
+public class ReplicaRoutingTest extends AbstractTest {
+
+    //test1
+    @Test
+    public void readsGoToReplicaTest() throws Exception {
+        mockMvc.perform(delete("/rest/ships/14"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/rest/ships/14").accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk());
+    }
+
+    //test2
+    @Test
+    public void readYourWritesTest() throws Exception {
+        Cookie cookie = mockMvc.perform(delete("/rest/ships/15"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getCookie("ships-primary-until");
+        assertNotNull("После изменения клиент должен читать с основной базы.", cookie);
+
+        mockMvc.perform(get("/rest/ships/15").cookie(cookie).accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/rest/ships/count").cookie(cookie))
+                .andExpect(content().string("39"));
+        mockMvc.perform(get("/rest/ships/count"))
+                .andExpect(content().string("40"));
+    }
+
+    //test3
+    @Test
+    public void replicaResponseHasNoVersionTest() throws Exception {
+        Cookie cookie = mockMvc.perform(delete("/rest/ships/16"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getCookie("ships-primary-until");
+
+        // another client, without the cookie, reads the replica's older count and must not get the new ETag with it
+        String etag = mockMvc.perform(get("/rest/ships/count"))
+                .andExpect(content().string("40"))
+                .andExpect(header().doesNotExist("Last-Modified"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNull("Ответ реплики не должен получать ETag.", etag);
+
+        mockMvc.perform(get("/rest/ships/count").cookie(cookie))
+                .andExpect(content().string("39"))
+                .andExpect(header().exists("ETag"));
+        mockMvc.perform(get("/rest/ships/16").accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"));
+    }
+}
@@ -0,0 +1,222 @@
+package com.space.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.space.config.AppConfig;
+import com.space.config.MyWebAppInit;
+import com.space.config.WebConfig;
+import com.space.metrics.InstrumentedDataSource;
+import com.space.metrics.StatementListener;
+import com.space.controller.utils.ShipInfoTest;
+import com.space.controller.utils.StatementCounter;
+import com.space.controller.utils.TestsHelper;
+import com.space.model.Ship;
+import com.space.model.ShipType;
+import com.space.routing.ShipShards;
+import com.space.service.ShipService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.sql.DataSource;
+import java.text.SimpleDateFormat;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs against three embedded shards. The shards are seeded when the context starts, not by
+ * test.sql before every test, so each test gets a fresh context.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ActiveProfiles("dev")
+@ContextConfiguration(classes = {AppConfig.class, MyWebAppInit.class, WebConfig.class})
+@WebAppConfiguration
+@TestPropertySource(properties = "ships.datasource.embeddedShards=3")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class ShardingTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final TestsHelper testsHelper = new TestsHelper();
+
+    private WebApplicationContext context;
+    private AsyncMockMvc mockMvc;
+
+    @Autowired
+    public void setContext(WebApplicationContext context) {
+        this.context = context;
+    }
+
+    @Before
+    public void setup() {
+        mockMvc = new AsyncMockMvc(MockMvcBuilders.webAppContextSetup(context).build());
+    }
+
+    //test1
+    @Test
+    public void scatterGatherReadsTest() throws Exception {
+        mockMvc.perform(get("/rest/ships/count"))
+                .andExpect(content().string("40"));
+
+        List<ShipInfoTest> all = getShips("/rest/ships?order=ID&pageSize=40");
+        assertEquals("Список кораблей со всех шардов не совпадает с ожидаемым.", testsHelper.getAllShips(), all);
+
+        List<ShipInfoTest> top = getShips("/rest/ships/leaderboard?limit=4");
+        List<ShipInfoTest> expected = testsHelper.getAllShips().stream()
+                .sorted(Comparator.comparing((ShipInfoTest ship) -> ship.rating)
+                        .thenComparing(ship -> ship.id).reversed())
+                .limit(4)
+                .collect(Collectors.toList());
+        assertEquals("Лучшие корабли со всех шардов объединены неправильно.", expected, top);
+
+        JsonNode stats = getJson("/rest/ships/stats?isUsed=true");
+        assertEquals(testsHelper.getShipInfosByIsUsed(true, testsHelper.getAllShips()).size(),
+                stats.get("count").asLong());
+    }
+
+    //test2
+    @Test
+    public void writesGoToOneShardTest() throws Exception {
+        ShipShards shards = context.getBean(ShipShards.class);
+
+        for (String planet : new String[]{"Earth", "Mars", "Venus", "Pluto"}) {
+            String created = mockMvc.perform(post("/rest/ships/")
+                    .contentType(MediaType.APPLICATION_JSON_UTF8)
+                    .content(TestsHelper.NORMAL_JSON.replace("Earth", planet)))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            long id = mapper.readTree(created).get("id").asLong();
+
+            Ship placed = new Ship();
+            placed.setPlanet(planet);
+            assertEquals("Id нового корабля должен указывать на шард его планеты.",
+                    shards.shardOf(placed), shards.shardOf(id));
+
+            mockMvc.perform(get("/rest/ships/" + id).accept(MediaType.APPLICATION_JSON_UTF8))
+                    .andExpect(status().isOk());
+            JsonNode changes = getJson("/rest/ships/changelog?shard=" + shards.shardOf(id));
+            JsonNode last = changes.get("changes").get(changes.get("changes").size() - 1);
+            assertEquals(id, last.get("shipId").asLong());
+        }
+
+        mockMvc.perform(post("/rest/ships/2")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content("{\"name\":\"Renamed\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/rest/ships/3"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/rest/ships/3"))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/rest/ships/count"))
+                .andExpect(content().string("43"));
+        List<ShipInfoTest> all = getShips("/rest/ships?order=ID&pageSize=50");
+        assertEquals("Id кораблей на разных шардах должны быть уникальны.", all.size(),
+                all.stream().map(ship -> ship.id).distinct().count());
+        assertEquals("Renamed", all.get(1).name);
+    }
+
+    //test3
+    @Test
+    public void changelogShardValidationTest() throws Exception {
+        mockMvc.perform(get("/rest/ships/changelog?shard=3"))
+                .andExpect(status().isBadRequest());
+        assertEquals(3, getJson("/rest/ships/changelog?shard=2").get("shards").asInt());
+    }
+
+    //test4
+    @Test
+    public void pageIsMergedFromShardsTest() throws Exception {
+        InstrumentedDataSource dataSource = context.getBean(InstrumentedDataSource.class);
+        StatementCounter counter = new StatementCounter();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        StatementListener threadRecorder = (sql, nanos) -> threads.add(Thread.currentThread().getName());
+        dataSource.addListener(counter);
+        dataSource.addListener(threadRecorder);
+        List<ShipInfoTest> page;
+        try {
+            page = getShips("/rest/ships?order=SPEED&isUsed=false&pageNumber=2&pageSize=4");
+        } finally {
+            dataSource.removeListener(counter);
+            dataSource.removeListener(threadRecorder);
+        }
+
+        List<ShipInfoTest> expected = testsHelper.getShipInfosByIsUsed(false, testsHelper.getAllShips()).stream()
+                .sorted(Comparator.comparing((ShipInfoTest ship) -> ship.speed).thenComparing(ship -> ship.id))
+                .skip(8)
+                .limit(4)
+                .collect(Collectors.toList());
+        assertEquals("Страница, собранная со всех шардов, не совпадает с ожидаемой.", expected, page);
+        assertTrue("Каждый шард должен прочитать не больше (pageNumber + 1) * pageSize строк: " + counter.getRowCount(),
+                counter.getRowCount() <= 3 * 12);
+        assertEquals("Шарды должны читаться параллельно: " + threads, 3, threads.size());
+    }
+
+    //test5
+    @Test
+    public void idOfAnotherShardIsRejectedTest() throws Exception {
+        ShipShards shards = context.getBean(ShipShards.class);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(context.getBean(DataSource.class));
+        for (int shard = 0; shard < shards.getCount(); shard++) {
+            long nextId = 1201 + (shard + 1) % shards.getCount();
+            shards.onShard(shard, () -> {
+                jdbcTemplate.execute("ALTER TABLE ship ALTER COLUMN id RESTART WITH " + nextId);
+                return null;
+            });
+        }
+
+        Ship ship = new Ship();
+        ship.setName("Misplaced");
+        ship.setPlanet("Mars");
+        ship.setShipType(ShipType.MERCHANT);
+        ship.setProdDate(new SimpleDateFormat("yyyy-MM-dd").parse("3000-01-01"));
+        ship.setSpeed(0.5);
+        ship.setCrewSize(100);
+        try {
+            context.getBean(ShipService.class).create(ship);
+            fail("Корабль с id чужого шарда не должен сохраняться.");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("auto_increment"));
+        }
+
+        mockMvc.perform(get("/rest/ships/count"))
+                .andExpect(content().string("40"));
+    }
+
+    private List<ShipInfoTest> getShips(String url) throws Exception {
+        String content = mockMvc.perform(get(url).accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return mapper.readValue(content, new TypeReference<List<ShipInfoTest>>() {
+        });
+    }
+
+    private JsonNode getJson(String url) throws Exception {
+        return mapper.readTree(mockMvc.perform(get(url).accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+}
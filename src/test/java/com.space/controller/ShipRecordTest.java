@@ -0,0 +1,33 @@
+package com.space.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class ShipRecordTest extends AbstractTest {
+
+    //test1
+    @Test
+    public void nullColumnsReadAsZeroTest() throws Exception {
+        new JdbcTemplate(context.getBean(DataSource.class)).update("UPDATE ship SET prodDate = NULL, isUsed = NULL, "
+                + "speed = NULL, crewSize = NULL, rating = NULL WHERE id = 1");
+
+        String contentAsString = mockMvc.perform(get("/rest/ships?pageSize=1")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode ship = new ObjectMapper().readTree(contentAsString).get(0);
+        assertEquals(1, ship.get("id").asLong());
+        assertEquals(0, ship.get("rating").asDouble(), 0);
+        assertEquals(0, ship.get("crewSize").asInt());
+    }
+}
@@ -0,0 +1,59 @@
+package com.space.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.space.controller.utils.StatementCounter;
+import com.space.metrics.InstrumentedDataSource;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class SparseFieldsTest extends AbstractTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    //test1
+    @Test
+    public void getShipsWithFieldsTest() throws Exception {
+        StatementCounter counter = new StatementCounter();
+        InstrumentedDataSource dataSource = context.getBean(InstrumentedDataSource.class);
+        dataSource.addListener(counter);
+        JsonNode ships;
+        try {
+            ships = getJson("/rest/ships?fields=name,rating&planet=Mars&order=RATING&pageSize=2");
+        } finally {
+            dataSource.removeListener(counter);
+        }
+
+        assertEquals(2, ships.size());
+        List<String> fieldNames = new ArrayList<>();
+        ships.get(0).fieldNames().forEachRemaining(fieldNames::add);
+        assertEquals("Лишние поля в ответе с параметром fields.", "[id, name, rating]", fieldNames.toString());
+        assertEquals("Scorpio E-X-1", ships.get(0).get("name").asText());
+
+        String sql = counter.getStatements().get(0).toLowerCase();
+        assertFalse("В SQL выбираются ненужные столбцы: " + sql, sql.contains("crewsize") || sql.contains("speed"));
+    }
+
+    //test2
+    @Test
+    public void getShipsWithUnknownFieldTest() throws Exception {
+        mockMvc.perform(get("/rest/ships?fields=name,weight")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isBadRequest());
+    }
+
+    private JsonNode getJson(String url) throws Exception {
+        return mapper.readTree(mockMvc.perform(get(url)
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+}
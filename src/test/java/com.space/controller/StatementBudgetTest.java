@@ -0,0 +1,114 @@
+package com.space.controller;
+
+import com.space.controller.utils.StatementCounter;
+import com.space.controller.utils.TestsHelper;
+import com.space.metrics.InstrumentedDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Fails when a request issues more JDBC statements or fetches more rows than its budget.
+ */
+public class StatementBudgetTest extends AbstractTest {
+
+    private static final int FLEET_SIZE = new TestsHelper().getAllShips().size();
+
+    private final StatementCounter counter = new StatementCounter();
+    private InstrumentedDataSource dataSource;
+
+    @Before
+    public void registerCounter() {
+        dataSource = context.getBean(InstrumentedDataSource.class);
+        dataSource.addListener(counter);
+    }
+
+    @After
+    public void unregisterCounter() {
+        dataSource.removeListener(counter);
+    }
+
+    //test1
+    @Test
+    public void getShipsList() throws Exception {
+        assertBudget(get("/rest/ships?pageSize=5").accept(MediaType.APPLICATION_JSON_UTF8), 1, FLEET_SIZE);
+    }
+
+    //test2
+    @Test
+    public void getShipsCount() throws Exception {
+        assertBudget(get("/rest/ships/count?shipType=MERCHANT").accept(MediaType.APPLICATION_JSON_UTF8), 1, FLEET_SIZE);
+    }
+
+    //test3
+    @Test
+    public void getShip() throws Exception {
+        assertBudget(get("/rest/ships/14").accept(MediaType.APPLICATION_JSON_UTF8), 1, 1);
+    }
+
+    //test4
+    @Test
+    public void getNotModifiedShipsList() throws Exception {
+        String eTag = mockMvc.perform(get("/rest/ships").accept(MediaType.APPLICATION_JSON_UTF8))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        counter.reset();
+        mockMvc.perform(get("/rest/ships")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isNotModified());
+        assertStatements(0);
+    }
+
+    //test5
+    @Test
+    public void createShip() throws Exception {
+        assertBudget(post("/rest/ships/")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content(TestsHelper.NORMAL_JSON), 4, 1);
+    }
+
+    //test6
+    @Test
+    public void updateShip() throws Exception {
+        assertBudget(post("/rest/ships/14")
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .content("{\"name\":\"Renamed\"}"), 5, 2);
+    }
+
+    //test7
+    @Test
+    public void deleteShip() throws Exception {
+        assertBudget(delete("/rest/ships/14"), 3, 0);
+    }
+
+    //test8
+    @Test
+    public void getShipsBatch() throws Exception {
+        assertBudget(get("/rest/ships/batch?ids=3,9,27,999").accept(MediaType.APPLICATION_JSON_UTF8), 1, 3);
+        assertBudget(get("/rest/ships/batch?ids=27,3").accept(MediaType.APPLICATION_JSON_UTF8), 0, 0);
+    }
+
+    private void assertBudget(RequestBuilder request, int maxStatements, int maxRows) throws Exception {
+        counter.reset();
+        mockMvc.perform(request).andExpect(status().isOk());
+        assertStatements(maxStatements);
+        assertTrue("Запрос прочитал " + counter.getRowCount() + " строк при бюджете " + maxRows,
+                counter.getRowCount() <= maxRows);
+    }
+
+    private void assertStatements(int maxStatements) {
+        assertTrue("Запрос выполнил " + counter.getStatementCount() + " SQL-запросов при бюджете "
+                        + maxStatements + ": " + counter.getStatements(),
+                counter.getStatementCount() <= maxStatements);
+    }
+}
@@ -0,0 +1,63 @@
+package com.space.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@TestPropertySource(properties = "ships.tracing.slowThresholdMillis=0")
+public class TracingTest extends AbstractTest {
+
+    private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+
+    //test1
+    @Test
+    public void getShipsListIsTracedWithPropagatedId() throws Exception {
+        mockMvc.perform(get("/rest/ships?minSpeed=0.5")
+                .header("traceparent", "00-" + TRACE_ID + "-00f067aa0ba902b7-01")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Trace-Id", TRACE_ID));
+
+        String contentAsString = mockMvc.perform(get("/admin/traces/" + TRACE_ID)
+                .header("traceparent", "00-" + TRACE_ID + "-00f067aa0ba902b7-00")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode trace = new ObjectMapper().readTree(contentAsString);
+        assertEquals(TRACE_ID, trace.get("traceId").asText());
+
+        Set<String> spanNames = new HashSet<>();
+        trace.get("spans").forEach(span -> spanNames.add(span.get("name").asText()));
+        assertTrue("Не хватает спанов: " + spanNames, spanNames.contains("controller")
+                && spanNames.contains("service.getFilteredShipList")
+                && spanNames.contains("service.getShipsPerPage")
+                && spanNames.contains("sql")
+                && spanNames.contains("serialize"));
+    }
+
+    //test2
+    @Test
+    public void malformedTraceHeadersAreIgnored() throws Exception {
+        String traceId = mockMvc.perform(get("/rest/ships/count")
+                .header("traceparent", "00-" + TRACE_ID + "-00f067aa0ba902b7-zz")
+                .header("X-Trace-Id", "<script>")
+                .accept(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("X-Trace-Id");
+
+        assertTrue("Передан некорректный идентификатор трассировки: " + traceId,
+                traceId == null || traceId.matches("[0-9a-f]{32}") && !traceId.equals(TRACE_ID));
+    }
+}
@@ -0,0 +1,39 @@
+package com.space.controller.utils;
+
+import com.space.metrics.StatementListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class StatementCounter implements StatementListener {
+    private final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+    private volatile int rows;
+
+    @Override
+    public void statementExecuted(String sql, long nanos) {
+        statements.add(sql);
+    }
+
+    @Override
+    public synchronized void rowsFetched(int rows) {
+        this.rows += rows;
+    }
+
+    public synchronized void reset() {
+        statements.clear();
+        rows = 0;
+    }
+
+    public int getStatementCount() {
+        return statements.size();
+    }
+
+    public List<String> getStatements() {
+        return new ArrayList<>(statements);
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+}
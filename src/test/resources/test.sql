@@ -1,4 +1,6 @@
 DROP TABLE IF EXISTS ship;
+DROP TABLE IF EXISTS ship_change_log;
+DROP TABLE IF EXISTS ship_change_sequence;
 
 CREATE TABLE ship
 (
@@ -10,10 +12,45 @@ CREATE TABLE ship
     isUsed   BIT(1)      NULL,
     speed    DOUBLE      NULL,
     crewSize INT(4)      NULL,
+    -- Written by the application with RatingFormula. This is deliberately not a generated column:
+    -- a generated column can only use fixed constants, while the formula is configurable. Ratings
+    -- are kept equal to the formula by RatingRecomputer and checked by GET /admin/ratings/check.
     rating   DOUBLE      NULL,
+    -- Version of the rating formula the rating was computed with, see RatingFormula.
+    ratingVersion INT    NULL,
     PRIMARY KEY (id)
 );
 
+CREATE INDEX ship_rating_idx ON ship (rating);
+-- Leaderboards read the first rows of these indexes, see ShipRepositoryCustom.findTop.
+CREATE INDEX ship_speed_idx ON ship (speed);
+CREATE INDEX ship_type_rating_idx ON ship (shipType, rating);
+CREATE INDEX ship_type_speed_idx ON ship (shipType, speed);
+CREATE INDEX ship_planet_rating_idx ON ship (planet, rating);
+CREATE INDEX ship_planet_speed_idx ON ship (planet, speed);
+
+-- Append-only log of ship changes, written in the same transaction as the change; see ShipChange.
+CREATE TABLE ship_change_log
+(
+    id             BIGINT(20) NOT NULL AUTO_INCREMENT,
+    shipId         BIGINT(20) NOT NULL,
+    changeType     VARCHAR(6) NOT NULL,
+    changedAt      BIGINT(20) NOT NULL,
+    commitSequence BIGINT(20) NOT NULL,
+    PRIMARY KEY (id),
+    UNIQUE (commitSequence)
+);
+
+-- Last commitSequence taken; its row lock orders the log by commit, see ShipChangeLog.
+CREATE TABLE ship_change_sequence
+(
+    lastSequence BIGINT(20) NOT NULL
+);
+INSERT INTO ship_change_sequence(lastSequence)
+VALUES (0);
+
+-- Icarus I keeps the rating 0.27 the fixture was written with, although at speed 0.08 the formula
+-- gives 0.30 (init.sql has 0.07); /admin/ratings/check reports it, see RatingTest.
 INSERT INTO ship(name, planet, shipType, prodDate, isUsed, speed, crewSize, rating)
 VALUES ('Orion III', 'Mars', 'MERCHANT', '2995-01-01', true, 0.82, 617, 1.31)
      , ('Daedalus', 'Jupiter', 'MERCHANT', '3001-01-01', true, 0.94, 1619, 1.98)
@@ -54,4 +91,6 @@ VALUES ('Orion III', 'Mars', 'MERCHANT', '2995-01-01', true, 0.82, 617, 1.31)
      , ('Nemesis', 'Neptune', 'MILITARY', '2999-01-01', true, 0.13, 1390, 0.25)
      , ('Nostromo', 'Saturn', 'MERCHANT', '2991-01-01', true, 0.31, 1967, 0.43)
      , ('Tardis', 'Jupiter', 'MERCHANT', '3016-01-01', false, 0.86, 4871, 17.20)
-     , ('Star Destroyer', 'Mercury', 'MILITARY', '3017-01-01', false, 0.92, 4880, 24.53);
\ No newline at end of file
+     , ('Star Destroyer', 'Mercury', 'MILITARY', '3017-01-01', false, 0.92, 4880, 24.53);
+
+UPDATE ship SET ratingVersion = 1;
\ No newline at end of file